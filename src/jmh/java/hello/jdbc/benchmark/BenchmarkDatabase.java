@@ -0,0 +1,69 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.tools.Server;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+// 벤치마크용 H2 데이터베이스
+// ConnectionConst.URL(tcp://localhost) 을 그대로 사용하되, 실행중인 H2 서버가 없으면 벤치마크 JVM 안에서 TCP 서버를 띄운다.
+// 외부 H2 서버 없이(오프라인으로) 실행할 수 있고, MemberRepositoryV0(DBConnectionUtil) 도 같은 DB 를 사용한다.
+public abstract class BenchmarkDatabase {
+
+    public static final int POOL_SIZE = 16;
+
+    private static Server server;
+
+    public static synchronized void start() throws SQLException {
+        if (server == null) {
+            try {
+                server = Server.createTcpServer("-tcpPort", "9092", "-ifNotExists").start();
+            } catch (SQLException e) {
+                // 이미 H2 서버가 떠 있는 경우 - 해당 서버를 사용
+                server = null;
+            }
+        }
+        try (Connection conn = driverManagerDataSource().getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("create table if not exists member (member_id varchar(10) primary key, money integer not null default 0)");
+        }
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+
+    public static DataSource driverManagerDataSource() {
+        return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    public static HikariDataSource hikariDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+        dataSource.setPoolName("BenchmarkPool");
+        return dataSource;
+    }
+
+    public static void execute(DataSource dataSource, String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    public static void close(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV0;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV2;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 리포지토리 세대(V0, V1, V2)와 커넥션 획득 방식(DriverManager, DriverManagerDataSource, HikariDataSource)별
+// save, findById, update 비용 비교
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    private static final int MEMBER_COUNT = 100;
+
+    // V0 : DBConnectionUtil (DriverManager 로 만든 Connection 을 재사용하는 SimpleConnectionPool)
+    // V1_DRIVER_MANAGER, V2_DRIVER_MANAGER : DriverManagerDataSource (호출마다 새 Connection)
+    // V1_HIKARI, V2_HIKARI : HikariDataSource (커넥션 풀)
+    @Param({"V0", "V1_DRIVER_MANAGER", "V1_HIKARI", "V2_DRIVER_MANAGER", "V2_HIKARI"})
+    public String repository;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private DataSource dataSource;
+    private Repository target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start();
+        dataSource = repository.endsWith("HIKARI") ? BenchmarkDatabase.hikariDataSource() : BenchmarkDatabase.driverManagerDataSource();
+        target = create(repository, dataSource);
+    }
+
+    // 반복(iteration)마다 테이블을 비우고 조회/수정 대상 회원을 다시 저장
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws SQLException {
+        BenchmarkDatabase.execute(dataSource, "delete from member");
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            target.save(new Member(memberId(i), 10000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.execute(dataSource, "delete from member");
+        BenchmarkDatabase.close(dataSource);
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Member save() throws SQLException {
+        // member_id 는 varchar(10) 이므로 36진수 일련번호 사용
+        String memberId = "s" + Long.toString(sequence.incrementAndGet(), 36);
+        return target.save(new Member(memberId, 10000));
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return target.findById(randomMemberId());
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        target.update(randomMemberId(), ThreadLocalRandom.current().nextInt(10000));
+    }
+
+    private String randomMemberId() {
+        return memberId(ThreadLocalRandom.current().nextInt(MEMBER_COUNT));
+    }
+
+    private static String memberId(int index) {
+        return "bench" + index;
+    }
+
+    private static Repository create(String repository, DataSource dataSource) {
+        if (repository.equals("V0")) {
+            MemberRepositoryV0 v0 = new MemberRepositoryV0();
+            return new Repository() {
+                public Member save(Member member) throws SQLException { return v0.save(member); }
+                public Member findById(String memberId) throws SQLException { return v0.findById(memberId); }
+                public void update(String memberId, Integer money) throws SQLException { v0.update(memberId, money); }
+            };
+        }
+        if (repository.startsWith("V1")) {
+            MemberRepositoryV1 v1 = new MemberRepositoryV1(dataSource);
+            return new Repository() {
+                public Member save(Member member) throws SQLException { return v1.save(member); }
+                public Member findById(String memberId) throws SQLException { return v1.findById(memberId); }
+                public void update(String memberId, Integer money) throws SQLException { v1.update(memberId, money); }
+            };
+        }
+        MemberRepositoryV2 v2 = new MemberRepositoryV2(dataSource);
+        return new Repository() {
+            public Member save(Member member) throws SQLException { return v2.save(member); }
+            public Member findById(String memberId) throws SQLException { return v2.findById(memberId); }
+            public void update(String memberId, Integer money) throws SQLException { v2.update(memberId, money); }
+        };
+    }
+
+    // 리포지토리 세대별로 공통 인터페이스가 없으므로, 벤치마크에서 사용할 메서드만 모은 어댑터
+    private interface Repository {
+        Member save(Member member) throws SQLException;
+
+        Member findById(String memberId) throws SQLException;
+
+        void update(String memberId, Integer money) throws SQLException;
+    }
+}
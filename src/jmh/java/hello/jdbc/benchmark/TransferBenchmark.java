@@ -0,0 +1,82 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.service.GroupCommitExecutor;
+import hello.jdbc.service.MemberServiceV2;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// MemberServiceV2.accountTransfer 전체(Connection 획득, 트랜잭션, SQL, 커밋, 반환) 비용 비교
+// accountTransferGroupCommit 은 동시에 들어온 이체를 모아서 커밋하므로, 스레드 수(-PjmhThreads)를 늘려서 비교한다.
+public class TransferBenchmark {
+
+    private static final int MAX_THREADS = 256;
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        @Param({"DRIVER_MANAGER", "HIKARI"})
+        public String dataSourceType;
+
+        private final AtomicInteger threadIndex = new AtomicInteger();
+
+        private DataSource dataSource;
+        private MemberRepositoryV2 memberRepository;
+        private MemberServiceV2 memberService;
+        private GroupCommitExecutor groupCommitExecutor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            BenchmarkDatabase.start();
+            dataSource = dataSourceType.equals("HIKARI") ? BenchmarkDatabase.hikariDataSource() : BenchmarkDatabase.driverManagerDataSource();
+            memberRepository = new MemberRepositoryV2(dataSource);
+            memberService = new MemberServiceV2(dataSource, memberRepository);
+            groupCommitExecutor = new GroupCommitExecutor(memberService, GroupCommitExecutor.DEFAULT_MAX_BATCH_SIZE, 200, TimeUnit.MICROSECONDS);
+
+            // 스레드마다 전용 계좌 한 쌍을 사용하여, 스레드 간 행 잠금 경합 없이 이체 자체의 비용을 측정
+            BenchmarkDatabase.execute(dataSource, "delete from member");
+            for (int i = 0; i < MAX_THREADS; i++) {
+                memberRepository.save(new Member("from" + i, Integer.MAX_VALUE));
+                memberRepository.save(new Member("to" + i, 0));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            groupCommitExecutor.close();
+            BenchmarkDatabase.execute(dataSource, "delete from member");
+            BenchmarkDatabase.close(dataSource);
+            BenchmarkDatabase.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private String fromId;
+        private String toId;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service) {
+            int index = service.threadIndex.getAndIncrement() % MAX_THREADS;
+            fromId = "from" + index;
+            toId = "to" + index;
+        }
+    }
+
+    @Benchmark
+    public void accountTransfer(Service service, Accounts accounts) throws SQLException {
+        service.memberService.accountTransfer(accounts.fromId, accounts.toId, 1);
+    }
+
+    @Benchmark
+    public void accountTransferGroupCommit(Service service, Accounts accounts) {
+        service.groupCommitExecutor.submit(new Transfer(accounts.fromId, accounts.toId, 1)).join();
+    }
+}
@@ -1,7 +1,15 @@
 package hello.jdbc;
 
+import hello.jdbc.connection.StatementCache;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.warmup.StartupWarmup;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
 
 @SpringBootApplication
 public class JdbcApplication {
@@ -10,4 +18,25 @@ public class JdbcApplication {
 		SpringApplication.run(JdbcApplication.class, args);
 	}
 
+	// Connection 별 PreparedStatement 캐시 - 워밍업의 statements 단계가 이 캐시를 채운다.
+	@Bean
+	public StatementCache statementCache() {
+		return new StatementCache();
+	}
+
+	// 요청을 처리하는 Repository - StatementCache 등은 @Autowired setter 로 주입된다.
+	@Bean
+	public MemberRepositoryV2 memberRepository(DataSource dataSource) {
+		return new MemberRepositoryV2(dataSource);
+	}
+
+	// 시작 시점 워밍업 - 끝나야 readiness 가 ACCEPTING_TRAFFIC 이 된다. (warmup.enabled=false 로 끌 수 있음)
+	// 요청을 처리하는 Repository 를 그대로 사용하므로, 준비한 PreparedStatement 가 요청 처리 시 캐시에서 재사용된다.
+	@Bean
+	@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true", matchIfMissing = true)
+	public StartupWarmup startupWarmup(DataSource dataSource, MemberRepositoryV2 memberRepository,
+									   @Value("${warmup.read-iterations:500}") int readIterations) {
+		return new StartupWarmup(dataSource, memberRepository, readIterations);
+	}
+
 }
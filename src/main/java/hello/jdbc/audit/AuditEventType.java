@@ -0,0 +1,10 @@
+package hello.jdbc.audit;
+
+// 감사 이벤트 종류
+public enum AuditEventType {
+    TRANSFER_ATTEMPTED,
+    TRANSFER_SUCCEEDED,
+    TRANSFER_RETRIED,
+    TRANSFER_FAILED,
+    VALIDATION_FAILED
+}
@@ -0,0 +1,392 @@
+package hello.jdbc.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// 감사 이벤트 비동기 기록기
+// - 이벤트는 미리 할당한 슬롯 배열(링 버퍼)에 복사하고 바로 반환한다. 기록하는 쪽(이체 스레드)은 DB insert 를 기다리지 않고, 객체도 만들지 않는다.
+// - 여러 스레드가 동시에 기록할 수 있다. (다음 순번을 CAS 로 차지하고, 슬롯을 채운 뒤 순번을 게시)
+// - 백그라운드 스레드 하나가 게시된 이벤트를 순서대로 모아서 executeBatch 1회로 insert 한다.
+// - 버퍼가 가득 찬 경우의 처리는 OverflowPolicy 로 정한다.
+//   DROP: 버리고 개수만 센다. BLOCK: 빈 슬롯이 생길 때까지 기다린다. SPILL: 파일에 한 줄로 기록하고, replaySpillFile() 로 나중에 insert 한다.
+// - insert 가 실패한 배치도 같은 정책을 따른다. SPILL 이면 배치의 이벤트를 파일에 기록하고, 그 외에는 버리고 개수만 센다.
+@Slf4j
+public class AuditEventWriter implements AutoCloseable {
+
+    public static final String EVENT_DDL = "create table if not exists member_audit_event (" +
+            " event_id bigint auto_increment primary key," +
+            " event_type varchar(30) not null," +
+            " from_id varchar(10)," +
+            " to_id varchar(10)," +
+            " money integer," +
+            " reason varchar(255)," +
+            " occurred_at timestamp not null)";
+
+    private static final String INSERT_SQL = "insert into member_audit_event (event_type, from_id, to_id, money, reason, occurred_at) values ( ?, ?, ?, ?, ?, ? )";
+    private static final int REASON_MAX_LENGTH = 255;
+    // 이벤트가 없을 때 소비 스레드의 대기 시간
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public enum OverflowPolicy {
+        DROP, BLOCK, SPILL
+    }
+
+    private final DataSource dataSource;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final int maxBatchSize;
+
+    // 링 버퍼 - 순번(sequence) 을 capacity 로 나눈 나머지가 슬롯 위치
+    private final int mask;
+    private final Slot[] slots;
+    // 슬롯별로 게시된 순번 - 소비 스레드는 이 값이 기다리는 순번과 같을 때만 읽는다.
+    private final AtomicLongArray published;
+    // 마지막으로 차지한 순번
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // 마지막으로 소비한 순번 - 이 순번까지의 슬롯은 다시 쓸 수 있다.
+    private volatile long consumed = -1;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    // spillFile 은 OverflowPolicy.SPILL 일 때만 사용 (그 외에는 null 가능)
+    public AuditEventWriter(DataSource dataSource, int capacity, int maxBatchSize, OverflowPolicy overflowPolicy, Path spillFile) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two capacity=" + capacity);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive maxBatchSize=" + maxBatchSize);
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL && spillFile == null) {
+            throw new IllegalArgumentException("spillFile is required for SPILL policy");
+        }
+        this.dataSource = dataSource;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        this.maxBatchSize = maxBatchSize;
+        this.mask = capacity - 1;
+        this.slots = new Slot[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+
+        this.consumer = new Thread(this::consume, "AuditEventWriter-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public void createTable() throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+            stmt.execute(EVENT_DDL);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    // 이벤트 기록 - 버퍼에 넣으면 true, DROP 정책 또는 close() 이후라서 버려졌으면 false
+    // 값은 슬롯에 복사되므로 호출한 쪽은 객체를 만들 필요가 없다. (문자열은 참조만 보관)
+    public boolean record(AuditEventType type, String fromId, String toId, int money, String reason) {
+        return record(type, fromId, toId, money, true, reason);
+    }
+
+    // money 가 null 인 이벤트 (잘못된 이체 요청 등) - money 컬럼을 null 로 기록
+    public boolean record(AuditEventType type, String fromId, String toId, Integer money, String reason) {
+        return money == null ? record(type, fromId, toId, 0, false, reason) : record(type, fromId, toId, money.intValue(), true, reason);
+    }
+
+    private boolean record(AuditEventType type, String fromId, String toId, int money, boolean hasMoney, String reason) {
+        if (!running) {
+            // close() 이후 - 소비 스레드가 없으므로 버퍼에 넣어도 기록되지 않음
+            droppedCount.increment();
+            return false;
+        }
+        long occurredAt = System.currentTimeMillis();
+        long sequence;
+        while (true) {
+            long current = claimed.get();
+            sequence = current + 1;
+            if (sequence - consumed > slots.length) {
+                // 가득 참
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    droppedCount.increment();
+                    return false;
+                }
+                if (overflowPolicy == OverflowPolicy.SPILL) {
+                    spill(type, fromId, toId, money, hasMoney, reason, occurredAt);
+                    return true;
+                }
+                if (!running) {
+                    droppedCount.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(current, sequence)) {
+                break;
+            }
+        }
+
+        int index = (int) (sequence & mask);
+        Slot slot = slots[index];
+        slot.type = type;
+        slot.fromId = fromId;
+        slot.toId = toId;
+        slot.money = money;
+        slot.hasMoney = hasMoney;
+        slot.reason = reason;
+        slot.occurredAt = occurredAt;
+        // 게시 - 이 쓰기 이후에 소비 스레드가 슬롯을 읽는다.
+        published.set(index, sequence);
+        publishedCount.increment();
+        return true;
+    }
+
+    // SPILL 정책으로 파일에 기록된 이벤트를 테이블에 insert 하고 파일을 비움 (반환값은 insert 한 건수)
+    public synchronized int replaySpillFile() throws IOException, SQLException {
+        if (spillFile == null || !Files.exists(spillFile)) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = dataSource.getConnection();
+            // 전부 insert 하거나 전부 롤백 - 일부만 insert 된 채로 파일이 남으면 다음 replay 에서 중복 insert 됨
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(INSERT_SQL);
+            for (String line : lines) {
+                String[] fields = line.split("\t", -1);
+                pstmt.setString(1, fields[1]);
+                pstmt.setString(2, emptyToNull(fields[2]));
+                pstmt.setString(3, emptyToNull(fields[3]));
+                if (fields[4].isEmpty()) {
+                    pstmt.setNull(4, Types.INTEGER);
+                } else {
+                    pstmt.setInt(4, Integer.parseInt(fields[4]));
+                }
+                pstmt.setString(5, emptyToNull(fields[5]));
+                pstmt.setTimestamp(6, new Timestamp(Long.parseLong(fields[0])));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            rollback(conn);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            release(conn);
+        }
+        Files.write(spillFile, new byte[0]);
+        return lines.size();
+    }
+
+    // 버퍼에 남은 이벤트까지 기록한 뒤 종료
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!consumer.isAlive()) {
+            // running 확인 직후에 close() 가 실행되어, 소비 스레드가 끝난 뒤에 게시된 이벤트
+            while (writeBatch() > 0) {
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    // 버퍼에 있는 (아직 기록되지 않은) 이벤트 수
+    public int getBacklog() {
+        return (int) (claimed.get() - consumed);
+    }
+
+    // 소비 스레드 - 게시된 이벤트를 순서대로 최대 maxBatchSize 건씩 모아서 insert
+    private void consume() {
+        while (true) {
+            boolean stopping = !running;
+            int written = writeBatch();
+            if (written == 0) {
+                if (stopping && claimed.get() == consumed) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // 슬롯은 executeBatch 가 끝난 뒤에 반환한다. insert 가 실패하면 SPILL 정책에서는 아직 슬롯에 남아 있는 값을 파일에 기록한다.
+    private int writeBatch() {
+        long next = consumed + 1;
+        int count = 0;
+        while (count < maxBatchSize && published.get((int) ((next + count) & mask)) == next + count) {
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(INSERT_SQL);
+            for (int i = 0; i < count; i++) {
+                Slot slot = slots[(int) ((next + i) & mask)];
+                pstmt.setString(1, slot.type.name());
+                pstmt.setString(2, slot.fromId);
+                pstmt.setString(3, slot.toId);
+                if (slot.hasMoney) {
+                    pstmt.setInt(4, slot.money);
+                } else {
+                    pstmt.setNull(4, Types.INTEGER);
+                }
+                pstmt.setString(5, truncate(slot.reason));
+                pstmt.setTimestamp(6, new Timestamp(slot.occurredAt));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            writtenCount.add(count);
+        } catch (SQLException e) {
+            // 감사 이벤트는 업무 처리에 영향을 주지 않도록, 실패한 배치는 파일에 기록(SPILL)하거나 버리고 계속 진행
+            log.error("audit event write failed count={}", count, e);
+            for (int i = 0; i < count; i++) {
+                Slot slot = slots[(int) ((next + i) & mask)];
+                if (overflowPolicy == OverflowPolicy.SPILL) {
+                    spill(slot.type, slot.fromId, slot.toId, slot.money, slot.hasMoney, slot.reason, slot.occurredAt);
+                } else {
+                    droppedCount.increment();
+                }
+            }
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+
+        // 슬롯 반환
+        for (int i = 0; i < count; i++) {
+            slots[(int) ((next + i) & mask)].clear();
+        }
+        consumed = next + count - 1;
+        return count;
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                log.error("rollback failed", e);
+            }
+        }
+    }
+
+    // AutoCommit 을 원래대로 돌려놓고 닫음 (풀에 반환되는 Connection)
+    private void release(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.error("setAutoCommit failed", e);
+            }
+        }
+        JdbcUtils.closeConnection(conn);
+    }
+
+    private synchronized void spill(AuditEventType type, String fromId, String toId, int money, boolean hasMoney, String reason, long occurredAt) {
+        String line = occurredAt + "\t" + type.name() + "\t" + nullToEmpty(fromId) + "\t" + nullToEmpty(toId) + "\t" + (hasMoney ? String.valueOf(money) : "") + "\t" +
+                nullToEmpty(truncate(reason)).replace('\t', ' ').replace('\n', ' ') + "\n";
+        try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+            spilledCount.increment();
+        } catch (IOException e) {
+            log.error("audit event spill failed file={}", spillFile, e);
+            droppedCount.increment();
+        }
+    }
+
+    private String truncate(String reason) {
+        return reason == null || reason.length() <= REASON_MAX_LENGTH ? reason : reason.substring(0, REASON_MAX_LENGTH);
+    }
+
+    private String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    // 미리 할당한 이벤트 슬롯 - 기록할 때마다 값을 덮어쓴다.
+    private static class Slot {
+        private AuditEventType type;
+        private String fromId;
+        private String toId;
+        private int money;
+        private boolean hasMoney;
+        private String reason;
+        private long occurredAt;
+
+        void clear() {
+            fromId = null;
+            toId = null;
+            reason = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package hello.jdbc.cache;
+
+import lombok.Getter;
+
+// 캐시 통계 스냅샷
+@Getter
+public class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadCount;
+    private final long totalLoadNanos;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long loadCount, long totalLoadNanos) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadCount = loadCount;
+        this.totalLoadNanos = totalLoadNanos;
+    }
+
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    // DB 조회 1회 평균 소요 시간
+    public double getAverageLoadNanos() {
+        return loadCount == 0 ? 0.0 : (double) totalLoadNanos / loadCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitRatio=" + String.format("%.3f", getHitRatio()) + ", hit=" + hitCount + ", miss=" + missCount
+                + ", eviction=" + evictionCount + ", load=" + loadCount + ", averageLoadNanos=" + String.format("%.0f", getAverageLoadNanos()) + '}';
+    }
+}
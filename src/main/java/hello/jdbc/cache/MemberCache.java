@@ -0,0 +1,149 @@
+package hello.jdbc.cache;
+
+import hello.jdbc.domain.Member;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Member 조회 결과 캐시
+// - 최대 개수를 넘으면 가장 오래 사용하지 않은 항목부터 제거 (LRU)
+// - 저장 후 TTL 이 지난 항목은 조회 시점에 제거
+// - 무효화 시각을 키 해시 기준 스트라이프 단위로 기록하여, 무효화 이전에 시작된 조회 결과가 캐시에 다시 들어가지 않도록 한다.
+public class MemberCache {
+
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final int maximumSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 스트라이프별 마지막 무효화 시각 (nanoTime). 이 시각 이전에 시작된 조회 결과는 캐시에 넣지 않는다.
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    public MemberCache(int maximumSize, long ttl, TimeUnit unit) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive maximumSize=" + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        long now = System.nanoTime();
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidatedAt.set(i, now);
+        }
+    }
+
+    // 캐시 조회 - 없거나 만료되었으면 null
+    // 캐시된 객체가 외부에서 변경되지 않도록 복사본을 반환한다.
+    public Member get(String memberId) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(memberId);
+            if (entry != null && System.nanoTime() - entry.loadedAt > ttlNanos) {
+                entries.remove(memberId);
+                evictionCount.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return new Member(entry.memberId, entry.money);
+    }
+
+    // 조회 결과 저장
+    // loadStartedAt 은 DB 조회를 시작한 시각(nanoTime) - 그 이후에 무효화가 있었다면 저장하지 않음
+    public void put(Member member, long loadStartedAt) {
+        long loadNanos = System.nanoTime() - loadStartedAt;
+        loadCount.increment();
+        totalLoadNanos.add(loadNanos);
+
+        synchronized (entries) {
+            // 무효화 시각 확인은 락 안에서 - 확인 후 저장 사이에 끼어든 무효화는 invalidateUntil 의 remove 가 처리
+            if (invalidatedAt.get(stripe(member.getMemberId())) - loadStartedAt >= 0) {
+                return;
+            }
+            entries.put(member.getMemberId(), new Entry(member.getMemberId(), member.getMoney(), System.nanoTime()));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maximumSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    // 즉시 무효화 - 이미 반영된(커밋된) 변경에 사용
+    public void invalidate(String memberId) {
+        invalidateUntil(memberId, System.nanoTime());
+    }
+
+    // 지정한 시각(nanoTime)까지 무효화 상태를 유지
+    // 아직 커밋되지 않은 변경처럼, 언제 반영될지 모르는 경우 그 사이의 조회 결과가 캐시에 들어가지 않도록 한다.
+    public void invalidateUntil(String memberId, long untilNanos) {
+        int stripe = stripe(memberId);
+        long current;
+        do {
+            current = invalidatedAt.get(stripe);
+            if (current - untilNanos >= 0) {
+                break;
+            }
+        } while (!invalidatedAt.compareAndSet(stripe, current, untilNanos));
+
+        synchronized (entries) {
+            entries.remove(memberId);
+        }
+    }
+
+    // 전체 무효화
+    public void invalidateAll() {
+        long now = System.nanoTime();
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidatedAt.accumulateAndGet(i, now, (current, next) -> current - next >= 0 ? current : next);
+        }
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getTtlNanos() {
+        return ttlNanos;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), loadCount.sum(), totalLoadNanos.sum());
+    }
+
+    private int stripe(String memberId) {
+        return (memberId.hashCode() & 0x7fffffff) % INVALIDATION_STRIPES;
+    }
+
+    private static class Entry {
+        private final String memberId;
+        private final Integer money;
+        private final long loadedAt;
+
+        Entry(String memberId, Integer money, long loadedAt) {
+            this.memberId = memberId;
+            this.money = money;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -4,4 +4,10 @@ public abstract class ConnectionConst {
     public static final String URL = "jdbc:h2:tcp://localhost/~/test";
     public static final String USERNAME = "sa";
     public static final String PASSWORD = "";
+
+    // DBConnectionUtil 커넥션 풀 설정
+    public static final int POOL_MIN_IDLE = 2;
+    public static final int POOL_MAX_SIZE = 10;
+    public static final long POOL_IDLE_TIMEOUT_MILLIS = 600_000;
+    public static final long POOL_BORROW_TIMEOUT_MILLIS = 30_000;
 }
@@ -0,0 +1,228 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 읽기/쓰기 분리 DataSource
+// - 트랜잭션 밖에서 읽기 힌트(withReadHint)가 설정된 getConnection 은 읽기 복제본(replica) 중 하나로 보낸다.
+// - 그 외(쓰기, 트랜잭션 시작)는 모두 primary 로 보낸다.
+//   트랜잭션 안의 Repository 호출은 트랜잭션 시작 시 primary 에서 얻은 Connection 을 그대로 사용하므로 primary 에서 실행된다.
+// - readYourWritesWindow 를 설정하면, primary Connection 을 사용한 스레드는 그 시간 동안 읽기도 primary 로 보낸다.
+//   (복제 지연으로 방금 쓴 값을 읽지 못하는 경우를 막음)
+// - 복제본에서 Connection 을 얻지 못하면 다음 복제본, 그래도 안 되면 primary 를 사용한다.
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    // 복제본 선택 방식
+    public enum ReplicaSelection {
+        // 순서대로 돌아가며 선택
+        ROUND_ROBIN,
+        // 이 DataSource 를 통해 대여중인 Connection 이 가장 적은 복제본 선택
+        LEAST_BUSY
+    }
+
+    private static final ThreadLocal<Boolean> READ_HINT = new ThreadLocal<>();
+    private static final ThreadLocal<Long> LAST_WRITE_AT = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaSelection selection;
+    private long readYourWritesWindowNanos;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // 복제본별 대여중인 Connection 수, 읽기 횟수
+    private final AtomicInteger[] activeCounts;
+    private final AtomicLongArray readCounts;
+    private final AtomicLong primaryReadCount = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaSelection selection) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+        this.activeCounts = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < activeCounts.length; i++) {
+            activeCounts[i] = new AtomicInteger();
+        }
+        this.readCounts = new AtomicLongArray(replicas.size());
+    }
+
+    public void setReadYourWritesWindow(long window, TimeUnit unit) {
+        this.readYourWritesWindowNanos = unit.toNanos(window);
+    }
+
+    // 읽기 힌트를 설정한 상태로 Connection 획득
+    public static Connection withReadHint(ConnectionSupplier supplier) throws SQLException {
+        READ_HINT.set(Boolean.TRUE);
+        try {
+            return supplier.get();
+        } finally {
+            READ_HINT.remove();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(null, null, false);
+    }
+
+    // 계정을 지정한 Connection 획득 - 같은 방식으로 라우팅하고, 선택된 DataSource 에 계정을 그대로 전달
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(username, password, true);
+    }
+
+    // 쓰기(트랜잭션)는 모두 primary 로 가므로, unwrap 은 primary 에 위임한다. (풀 크기 확인 등)
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    public long getReplicaReadCount(int replica) {
+        return readCounts.get(replica);
+    }
+
+    public int getReplicaActiveCount(int replica) {
+        return activeCounts[replica].get();
+    }
+
+    // 읽기 힌트가 있었지만 primary 로 보낸 횟수
+    public long getPrimaryReadCount() {
+        return primaryReadCount.get();
+    }
+
+    private Connection route(String username, String password, boolean credentials) throws SQLException {
+        if (isReplicaRead()) {
+            Connection connection = getReplicaConnection(username, password, credentials);
+            if (connection != null) {
+                return connection;
+            }
+        }
+        if (READ_HINT.get() != null) {
+            primaryReadCount.incrementAndGet();
+        } else if (readYourWritesWindowNanos > 0) {
+            LAST_WRITE_AT.set(System.nanoTime());
+        }
+        return open(primary, username, password, credentials);
+    }
+
+    private Connection open(DataSource dataSource, String username, String password, boolean credentials) throws SQLException {
+        return credentials ? dataSource.getConnection(username, password) : dataSource.getConnection();
+    }
+
+    private boolean isReplicaRead() {
+        if (READ_HINT.get() == null || replicas.isEmpty() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        Long lastWriteAt = LAST_WRITE_AT.get();
+        if (lastWriteAt != null) {
+            if (System.nanoTime() - lastWriteAt < readYourWritesWindowNanos) {
+                return false;
+            }
+            LAST_WRITE_AT.remove();
+        }
+        return true;
+    }
+
+    private Connection getReplicaConnection(String username, String password, boolean credentials) {
+        int first = selectReplica();
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (first + i) % replicas.size();
+            try {
+                Connection connection = open(replicas.get(replica), username, password, credentials);
+                readCounts.incrementAndGet(replica);
+                activeCounts[replica].incrementAndGet();
+                return track(connection, replica);
+            } catch (SQLException e) {
+                log.warn("replica connection failed replica={}, cause={}", replica, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private int selectReplica() {
+        if (selection == ReplicaSelection.ROUND_ROBIN) {
+            return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        }
+        // 대여중인 Connection 이 같으면 순서대로 돌아가며 선택
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        int best = start;
+        for (int i = 1; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            if (activeCounts[replica].get() < activeCounts[best].get()) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    // close() 시점에 대여중인 Connection 수를 줄이는 프록시
+    private Connection track(Connection connection, int replica) {
+        return (Connection) Proxy.newProxyInstance(
+                ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new TrackingHandler(connection, replica));
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    private class TrackingHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final int replica;
+        private boolean closed;
+
+        TrackingHandler(Connection target, int replica) {
+            this.target = target;
+            this.replica = replica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        activeCounts[replica].decrementAndGet();
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// DriverManager 기반의 단순 커넥션 풀
+// - 최대 maxSize 개의 물리 Connection 을 사용하고 (대여중 + 유휴), 유휴 Connection 은 minIdle 개 이상 유지
+// - 대여 시 Connection 유효성 검사 (최근에 사용한 Connection 은 검사 생략)
+// - idleTimeout 동안 사용되지 않은 유휴 Connection 은 minIdle 을 넘는 만큼 정리
+// - 대여되는 Connection 은 프록시이며, close() 를 호출하면 물리 Connection 을 닫지 않고 풀에 반환한다.
+@Slf4j
+public class SimpleConnectionPool {
+
+    // 이 시간 안에 사용된 Connection 은 대여 시 유효성 검사를 생략
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minIdle;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    // 유휴 Connection - 가장 최근에 반환된 Connection 부터 대여 (LIFO)
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    // 대여중인 Connection 수를 maxSize 이하로 제한
+    private final Semaphore permits;
+    // 물리 Connection 수 (대여중 + 유휴 + 생성중) - 생성 전에 CAS 로 maxSize 미만일 때만 1 증가시켜 maxSize 이하로 제한
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+
+    public SimpleConnectionPool(String url, String username, String password,
+                                int minIdle, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("invalid pool size minIdle=" + minIdle + ", maxSize=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        // 유휴 Connection 정리, minIdle 채우기는 백그라운드에서 실행
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SimpleConnectionPool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Connection 대여 - 풀이 가득 차 있으면 borrowTimeout 까지 대기
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw timeout();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during connection acquisition", e);
+        }
+
+        try {
+            while (true) {
+                PooledConnection pooled = idleConnections.pollFirst();
+                if (pooled == null) {
+                    if (reserve()) {
+                        return createPhysical().borrow();
+                    }
+                    // 물리 Connection 이 이미 maxSize 개 - 반환중이거나 정리중인 Connection 이 유휴 목록에 들어올 때까지 대기
+                    pooled = idleConnections.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (pooled == null) {
+                        throw timeout();
+                    }
+                }
+                if (isValid(pooled)) {
+                    return pooled.borrow();
+                }
+                closePhysical(pooled);
+            }
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during connection acquisition", e);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // 대여중인 Connection 수
+    public int getActiveCount() {
+        return totalConnections.get() - idleConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // 풀 종료 - 유휴 Connection 을 모두 닫음 (대여중인 Connection 은 반환 시점에 닫힘)
+    public void close() {
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            closePhysical(pooled);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleConnectionPool{total=" + getTotalCount() + ", active=" + getActiveCount() + ", idle=" + getIdleCount() + '}';
+    }
+
+    // 반환된 Connection 의 상태를 초기화 후 유휴 목록에 넣음. 초기화에 실패하면 폐기
+    private void release(PooledConnection pooled) {
+        try {
+            Connection physical = pooled.physical;
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            pooled.lastUsedAt = System.currentTimeMillis();
+            if (housekeeper.isShutdown()) {
+                closePhysical(pooled);
+            } else {
+                idleConnections.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            log.warn("connection reset failed, discard connection={}", pooled.physical, e);
+            closePhysical(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private SQLTimeoutException timeout() {
+        return new SQLTimeoutException("Connection is not available, request timed out after " + borrowTimeoutMillis + "ms");
+    }
+
+    // 물리 Connection 1개 자리 확보 - maxSize 에 도달했으면 false
+    private boolean reserve() {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= maxSize) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // reserve() 로 자리를 확보한 뒤 호출 - 생성에 실패하면 자리를 돌려놓음
+    private PooledConnection createPhysical() throws SQLException {
+        Connection physical;
+        try {
+            physical = DriverManager.getConnection(url, username, password);
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+        log.info("new connection={}, pool={}", physical, this);
+        return new PooledConnection(physical);
+    }
+
+    private void closePhysical(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            log.error("Connection close error", e);
+        }
+    }
+
+    // 오래된 유휴 Connection 정리 후 minIdle 까지 채움
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && idleConnections.size() > minIdle) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.lastUsedAt > idleTimeoutMillis && idleConnections.removeLastOccurrence(pooled)) {
+                closePhysical(pooled);
+            }
+        }
+
+        while (idleConnections.size() < minIdle && reserve()) {
+            try {
+                idleConnections.offerLast(createPhysical());
+            } catch (SQLException e) {
+                log.warn("connection fill failed pool={}", this, e);
+                break;
+            }
+        }
+    }
+
+    // 풀이 관리하는 물리 Connection
+    private class PooledConnection {
+
+        private final Connection physical;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(
+                    SimpleConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ProxyHandler(this));
+        }
+    }
+
+    // 대여된 Connection 프록시 - close() 시 풀에 반환, 반환 후에는 사용할 수 없음
+    private class ProxyHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        ProxyHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(pooled.physical) ? pooled.physical : pooled.physical.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(pooled.physical) || pooled.physical.isWrapperFor((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "pooled:" + pooled.physical;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Connection + SQL 단위의 PreparedStatement 캐시
+// 같은 SQL 을 매번 prepareStatement 하면 드라이버가 SQL 을 다시 파싱하므로, 물리 Connection 별로 PreparedStatement 를 재사용한다.
+//
+// - 키는 커넥션 풀의 프록시가 아닌 물리 Connection 이다. (풀에 반환되었다가 다시 나와도 같은 물리 Connection 이면 재사용)
+//   PreparedStatement 도 물리 Connection 에서 생성하므로, 풀(HikariCP)이 반환 시점에 Statement 를 닫지 않는다.
+// - 반환되는 PreparedStatement 는 캐시용 프록시이며, close() 를 호출하면 실제로 닫지 않고 파라미터를 비운 뒤 캐시에 돌려놓는다.
+// - 물리 Connection 이 닫히면(풀에서 제거되면) 해당 Connection 의 캐시는 다음 조회 시점에 정리된다.
+// - Connection 별 최대 개수를 넘으면 가장 오래 사용하지 않은 PreparedStatement 부터 닫는다. (LRU)
+@Slf4j
+public class StatementCache {
+
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final int maxSizePerConnection;
+    private final Map<Connection, ConnectionStatements> caches = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public StatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(int maxSizePerConnection) {
+        if (maxSizePerConnection < 1) {
+            throw new IllegalArgumentException("maxSizePerConnection must be positive maxSizePerConnection=" + maxSizePerConnection);
+        }
+        this.maxSizePerConnection = maxSizePerConnection;
+    }
+
+    // 캐시된 PreparedStatement 를 꺼내거나, 없으면 새로 생성하여 캐시에 등록
+    // 같은 SQL 의 PreparedStatement 가 이미 사용중이면 캐시하지 않는 PreparedStatement 를 생성한다.
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        Connection physical = conn.unwrap(Connection.class);
+
+        if (physical.isClosed()) {
+            invalidate(physical);
+            return conn.prepareStatement(sql);
+        }
+
+        ConnectionStatements statements = caches.computeIfAbsent(physical, key -> new ConnectionStatements());
+        CachedStatement cached = statements.checkout(physical, sql);
+        return cached == null ? conn.prepareStatement(sql) : cached.newHandle(conn);
+    }
+
+    // 물리 Connection 이 무효화된 경우, 캐시된 PreparedStatement 를 모두 닫는다.
+    public void invalidate(Connection conn) throws SQLException {
+        ConnectionStatements statements = caches.remove(conn.unwrap(Connection.class));
+        if (statements != null) {
+            statements.closeAll();
+        }
+    }
+
+    // 모든 캐시를 비운다.
+    public void clear() {
+        for (Connection physical : caches.keySet()) {
+            ConnectionStatements statements = caches.remove(physical);
+            if (statements != null) {
+                statements.closeAll();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    // 캐시된 PreparedStatement 수
+    public int size() {
+        return caches.values().stream().mapToInt(ConnectionStatements::size).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache{connections=" + caches.size() + ", size=" + size() + ", hit=" + hitCount + ", miss=" + missCount + ", eviction=" + evictionCount + '}';
+    }
+
+    // 닫힌 물리 Connection 의 캐시 정리 (캐시 미스 시점에 실행)
+    private void purgeClosedConnections() {
+        for (Connection physical : caches.keySet()) {
+            boolean closed;
+            try {
+                closed = physical.isClosed();
+            } catch (SQLException e) {
+                closed = true;
+            }
+            if (closed) {
+                ConnectionStatements statements = caches.remove(physical);
+                if (statements != null) {
+                    statements.closeAll();
+                }
+            }
+        }
+    }
+
+    // 물리 Connection 1개의 PreparedStatement 캐시 (LRU)
+    private class ConnectionStatements {
+
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        CachedStatement checkout(Connection physical, String sql) throws SQLException {
+            synchronized (this) {
+                CachedStatement cached = statements.get(sql);
+                if (cached != null && !cached.statement.isClosed()) {
+                    if (cached.inUse) {
+                        return null;
+                    }
+                    cached.inUse = true;
+                    hitCount.incrementAndGet();
+                    return cached;
+                }
+                if (cached != null) {
+                    statements.remove(sql);
+                }
+            }
+
+            missCount.incrementAndGet();
+            purgeClosedConnections();
+
+            CachedStatement created = new CachedStatement(physical.prepareStatement(sql));
+            created.inUse = true;
+            synchronized (this) {
+                statements.put(sql, created);
+                evictIfNecessary();
+            }
+            return created;
+        }
+
+        private void evictIfNecessary() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (statements.size() > maxSizePerConnection && iterator.hasNext()) {
+                CachedStatement eldest = iterator.next();
+                if (!eldest.inUse) {
+                    iterator.remove();
+                    eldest.closeQuietly();
+                    evictionCount.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized void closeAll() {
+            for (CachedStatement cached : statements.values()) {
+                cached.closeQuietly();
+            }
+            statements.clear();
+        }
+
+        synchronized int size() {
+            return statements.size();
+        }
+    }
+
+    // 캐시에 보관되는 실제 PreparedStatement
+    private static class CachedStatement {
+
+        private final PreparedStatement statement;
+        private volatile boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        // 사용자에게 돌려줄 프록시 - close() 를 호출하면 캐시에 반환
+        PreparedStatement newHandle(Connection logical) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handle(this, logical));
+        }
+
+        // 다음 사용자를 위해 파라미터와 배치를 비운다. 실패하면 더 이상 재사용하지 않도록 닫는다.
+        void release() {
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                log.warn("cached statement reset error", e);
+                closeQuietly();
+            }
+            inUse = false;
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.error("Statement close error", e);
+            }
+        }
+    }
+
+    private static class Handle implements InvocationHandler {
+
+        private final CachedStatement cached;
+        private final Connection logical;
+        private boolean closed;
+
+        Handle(CachedStatement cached, Connection logical) {
+            this.cached = cached;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return logical;
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(proxy) ? proxy : cached.statement.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy) || cached.statement.isWrapperFor((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "cached:" + cached.statement;
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(cached.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
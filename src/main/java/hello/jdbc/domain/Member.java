@@ -12,6 +12,8 @@ import java.util.Objects;
 public class Member {
     private String memberId;
     private Integer money;
+    // 낙관적 락 버전 - version 컬럼을 조회한 경우에만 값이 있음 (동등성 비교에는 사용하지 않음)
+    private Integer version;
 
     public Member() {
     }
@@ -21,9 +23,15 @@ public class Member {
         this.money = money;
     }
 
+    public Member(String memberId, Integer money, Integer version) {
+        this.memberId = memberId;
+        this.money = money;
+        this.version = version;
+    }
+
     @Override
     public String toString() {
-        return "Member{memberId='" + memberId + '\'' + ", money=" + money + '}';
+        return "Member{memberId='" + memberId + '\'' + ", money=" + money + (version == null ? "" : ", version=" + version) + '}';
     }
 
     @Override
@@ -0,0 +1,37 @@
+package hello.jdbc.domain;
+
+import lombok.Getter;
+
+import java.util.Objects;
+
+// 계좌이체 요청 (fromId -> toId, money)
+@Getter
+public class Transfer {
+    private final String fromId;
+    private final String toId;
+    private final Integer money;
+
+    public Transfer(String fromId, String toId, Integer money) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.money = money;
+    }
+
+    @Override
+    public String toString() {
+        return "Transfer{fromId='" + fromId + '\'' + ", toId='" + toId + '\'' + ", money=" + money + '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Transfer transfer = (Transfer) o;
+        return Objects.equals(fromId, transfer.fromId) && Objects.equals(toId, transfer.toId) && Objects.equals(money, transfer.money);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromId, toId, money);
+    }
+}
@@ -0,0 +1,37 @@
+package hello.jdbc.lock;
+
+import lombok.Getter;
+
+// 스트라이프 1개의 락 경합 통계
+@Getter
+public class StripeStats {
+
+    private final int stripe;
+    // 락 획득 횟수
+    private final long acquireCount;
+    // 바로 얻지 못하고 대기한 횟수
+    private final long contendedCount;
+    // 대기한 시간 합계 (ns)
+    private final long totalWaitNanos;
+    // 현재 대기중인 스레드 수 (추정치)
+    private final int queueLength;
+
+    public StripeStats(int stripe, long acquireCount, long contendedCount, long totalWaitNanos, int queueLength) {
+        this.stripe = stripe;
+        this.acquireCount = acquireCount;
+        this.contendedCount = contendedCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.queueLength = queueLength;
+    }
+
+    // 획득 중 대기한 비율
+    public double getContentionRatio() {
+        return acquireCount == 0 ? 0.0 : (double) contendedCount / acquireCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StripeStats{stripe=" + stripe + ", acquireCount=" + acquireCount + ", contendedCount=" + contendedCount
+                + ", totalWaitNanos=" + totalWaitNanos + ", queueLength=" + queueLength + '}';
+    }
+}
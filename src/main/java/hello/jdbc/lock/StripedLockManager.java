@@ -0,0 +1,119 @@
+package hello.jdbc.lock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// memberId 해시 기준의 스트라이프 락
+// - 같은 회원(또는 같은 스트라이프로 모이는 회원)의 작업을 JVM 안에서 먼저 줄 세운다.
+//   DB 행 락에서 기다리면 대기하는 동안 커넥션을 붙잡고 있지만, JVM 락에서 기다리면 커넥션을 사용하지 않는다.
+// - 여러 회원을 잠글 때는 스트라이프 번호 순서로 획득하므로, 반대 방향으로 잠그는 요청끼리 교착 상태가 생기지 않는다.
+// - 하나의 JVM 안에서만 유효하므로, DB 락(select ... for update)을 대체하지는 않는다.
+public class StripedLockManager {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] locks;
+
+    // 스트라이프별 경합 통계
+    private final AtomicLongArray acquireCounts;
+    private final AtomicLongArray contendedCounts;
+    private final AtomicLongArray waitNanos;
+
+    public StripedLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedLockManager(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive stripes=" + stripes);
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.acquireCounts = new AtomicLongArray(stripes);
+        this.contendedCounts = new AtomicLongArray(stripes);
+        this.waitNanos = new AtomicLongArray(stripes);
+    }
+
+    // 회원들의 스트라이프 락을 스트라이프 번호 순서로 획득
+    // 반환된 Locks 를 close() 하면 역순으로 해제한다. (같은 스트라이프는 한 번만 잠금)
+    public Locks lock(String... memberIds) {
+        int[] stripes = Arrays.stream(memberIds).mapToInt(this::stripe).sorted().distinct().toArray();
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                acquire(stripe);
+                locked++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(stripes, locked);
+            throw new IllegalStateException("interrupted while waiting for member lock", e);
+        }
+        return new Locks(stripes);
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    public int stripe(String memberId) {
+        int hash = memberId.hashCode();
+        // 해시 하위 비트가 고르지 않은 경우를 위해 상위 비트를 섞음
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % locks.length;
+    }
+
+    public StripeStats stats(int stripe) {
+        return new StripeStats(stripe, acquireCounts.get(stripe), contendedCounts.get(stripe), waitNanos.get(stripe), locks[stripe].getQueueLength());
+    }
+
+    // 전체 스트라이프 통계
+    public List<StripeStats> stats() {
+        List<StripeStats> stats = new ArrayList<>(locks.length);
+        for (int i = 0; i < locks.length; i++) {
+            stats.add(stats(i));
+        }
+        return stats;
+    }
+
+    private void acquire(int stripe) throws InterruptedException {
+        ReentrantLock lock = locks[stripe];
+        if (!lock.tryLock()) {
+            long startedAt = System.nanoTime();
+            lock.lockInterruptibly();
+            contendedCounts.incrementAndGet(stripe);
+            waitNanos.addAndGet(stripe, System.nanoTime() - startedAt);
+        }
+        acquireCounts.incrementAndGet(stripe);
+    }
+
+    private void unlock(int[] stripes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    // 획득한 스트라이프 락 묶음 - 획득한 스레드에서 close() 해야 한다.
+    public class Locks implements AutoCloseable {
+
+        private final int[] stripes;
+        private boolean closed;
+
+        private Locks(int[] stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unlock(stripes, stripes.length);
+            }
+        }
+    }
+}
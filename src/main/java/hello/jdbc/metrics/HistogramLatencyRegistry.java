@@ -0,0 +1,28 @@
+package hello.jdbc.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 메모리 내 LatencyHistogram 으로 기록하는 LatencyRegistry
+public class HistogramLatencyRegistry implements LatencyRegistry {
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public LatencyHistogram recorder(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // 이름의 스냅샷 - 기록된 적이 없으면 빈 스냅샷
+    public LatencySnapshot snapshot(String name) {
+        return recorder(name).snapshot();
+    }
+
+    // 전체 스냅샷 (이름순)
+    public Map<String, LatencySnapshot> snapshots() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+}
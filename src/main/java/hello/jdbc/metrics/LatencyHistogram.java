@@ -0,0 +1,86 @@
+package hello.jdbc.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// HDR 히스토그램 방식의 소요 시간(ns) 히스토그램
+// 값의 2의 거듭제곱 구간마다 32개의 하위 구간으로 나누어 개수만 센다. (상대 오차 약 3%)
+// 기록은 구간 계산(비트 연산)과 원자적 증가뿐이므로 할당이나 락이 없다.
+public class LatencyHistogram implements LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final long createdAt = System.nanoTime();
+
+    @Override
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        totalNanos.add(value);
+        if (value > maxNanos.get()) {
+            maxNanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        double elapsedSeconds = (System.nanoTime() - createdAt) / 1_000_000_000.0;
+        return new LatencySnapshot(
+                count,
+                count == 0 ? 0.0 : (double) totalNanos.sum() / count,
+                percentile(copy, count, 0.50),
+                percentile(copy, count, 0.99),
+                percentile(copy, count, 0.999),
+                maxNanos.get(),
+                elapsedSeconds <= 0 ? 0.0 : count / elapsedSeconds);
+    }
+
+    private static long percentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return middle(i);
+            }
+        }
+        return middle(counts.length - 1);
+    }
+
+    // 값이 속하는 구간 번호
+    // SUB_BUCKETS 미만의 값은 값 그대로, 그 이상은 (지수, 상위 SUB_BUCKET_BITS+1 비트) 로 구간을 정한다.
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // 구간의 대표값 (구간 하한 + 구간 폭의 절반)
+    static long middle(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowerBound + ((1L << shift) >>> 1);
+    }
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.metrics;
+
+// 소요 시간 기록
+// 호출 경로(hot path)에서 사용하므로, 구현체는 기록 1회에 수십 ns 이내여야 한다.
+@FunctionalInterface
+public interface LatencyRecorder {
+
+    LatencyRecorder NOOP = nanos -> {
+    };
+
+    void record(long nanos);
+
+    // 시작 시각(System.nanoTime())부터 현재까지의 소요 시간 기록
+    default void recordSince(long startedAt) {
+        record(System.nanoTime() - startedAt);
+    }
+}
@@ -0,0 +1,11 @@
+package hello.jdbc.metrics;
+
+// 이름별 LatencyRecorder 를 제공하는 저장소
+// 구현체에 따라 메모리 내 히스토그램(HistogramLatencyRegistry), Micrometer(MicrometerLatencyRegistry) 등으로 기록된다.
+// recorder() 는 이름으로 조회하므로, 사용하는 쪽에서는 생성 시점에 한번만 조회하여 보관한다.
+public interface LatencyRegistry {
+
+    LatencyRegistry NOOP = name -> LatencyRecorder.NOOP;
+
+    LatencyRecorder recorder(String name);
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.metrics;
+
+import lombok.Getter;
+
+// 히스토그램 스냅샷 - 시간 단위는 ns
+@Getter
+public class LatencySnapshot {
+
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+    // 히스토그램 생성 이후 초당 처리 건수
+    private final double throughputPerSecond;
+
+    public LatencySnapshot(long count, double meanNanos, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos, double throughputPerSecond) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+        this.throughputPerSecond = throughputPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + count + ", mean=" + String.format("%.0f", meanNanos) + "ns, p50=" + p50Nanos + "ns, p99=" + p99Nanos
+                + "ns, p999=" + p999Nanos + "ns, max=" + maxNanos + "ns, throughput=" + String.format("%.1f", throughputPerSecond) + "/s}";
+    }
+}
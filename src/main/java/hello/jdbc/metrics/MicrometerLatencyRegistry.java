@@ -0,0 +1,25 @@
+package hello.jdbc.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+// Micrometer Timer 로 기록하는 LatencyRegistry
+// p50, p99, p999 를 클라이언트 측 백분위수로 발행하고, 처리 건수는 Timer 의 count 로 제공된다.
+public class MicrometerLatencyRegistry implements LatencyRegistry {
+
+    private final MeterRegistry meterRegistry;
+
+    public MicrometerLatencyRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public LatencyRecorder recorder(String name) {
+        Timer timer = Timer.builder(name)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
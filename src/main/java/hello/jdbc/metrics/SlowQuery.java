@@ -0,0 +1,35 @@
+package hello.jdbc.metrics;
+
+import lombok.Getter;
+
+import java.util.List;
+
+// 임계 시간을 넘은 SQL 실행 기록
+@Getter
+public class SlowQuery {
+
+    private final String sql;
+    // 바인딩된 파라미터 (마스킹 적용 후). 배치 실행이면 마지막으로 추가된 파라미터
+    private final List<String> parameters;
+    private final int batchSize;
+    private final String connectionId;
+    private final long elapsedNanos;
+    // EXPLAIN 결과 - 수집하지 않았으면 null
+    private final String plan;
+
+    public SlowQuery(String sql, List<String> parameters, int batchSize, String connectionId, long elapsedNanos, String plan) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.batchSize = batchSize;
+        this.connectionId = connectionId;
+        this.elapsedNanos = elapsedNanos;
+        this.plan = plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery{elapsed=" + elapsedNanos / 1_000_000 + "ms, connection=" + connectionId + ", sql=" + sql
+                + ", parameters=" + parameters + (batchSize > 0 ? ", batchSize=" + batchSize : "")
+                + (plan != null ? ", plan=" + plan : "") + '}';
+    }
+}
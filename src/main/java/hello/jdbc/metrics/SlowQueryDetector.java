@@ -0,0 +1,263 @@
+package hello.jdbc.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// 느린 SQL 탐지기
+// - 리포지토리가 생성한 PreparedStatement 를 프록시로 감싸서 바인딩 파라미터를 모으고 execute* 실행 시간을 잰다.
+// - 임계 시간을 넘으면 SQL, 파라미터(마스킹), Connection id, 소요 시간을 기록한다.
+// - EXPLAIN 용 DataSource 를 지정하면 H2 EXPLAIN 으로 실행 계획도 함께 남긴다.
+//   SQL 과 파라미터만 복사해 두고, 별도 스레드가 별도 Connection 에서 EXPLAIN 을 실행한 뒤 기록한다.
+//   (SQL 을 실행한 스레드를 잡아두지 않고, 그 Connection 의 트랜잭션에도 끼어들지 않음)
+//   EXPLAIN 자체가 부하가 되지 않도록 explainInterval 마다 최대 1번만 실행한다.
+@Slf4j
+public class SlowQueryDetector implements AutoCloseable {
+
+    public static final long DEFAULT_EXPLAIN_INTERVAL_MILLIS = 10_000;
+
+    // 기본 마스킹 - 날짜, boolean, null 은 그대로, 숫자는 모두 가리고, 문자열 등은 앞 2글자만 남김
+    public static final Function<Object, String> DEFAULT_MASKER = value -> {
+        if (value == null || value instanceof Boolean || value instanceof java.util.Date) {
+            return String.valueOf(value);
+        }
+        String text = String.valueOf(value);
+        if (value instanceof Number || text.length() <= 2) {
+            return "*".repeat(text.length());
+        }
+        return text.substring(0, 2) + "*".repeat(text.length() - 2);
+    };
+
+    private final long thresholdNanos;
+
+    private Function<Object, String> parameterMasker = DEFAULT_MASKER;
+    private Consumer<SlowQuery> reporter = slowQuery -> log.warn("slow query {}", slowQuery);
+    // EXPLAIN 을 실행할 Connection 을 얻는 곳 - null 이면 EXPLAIN 을 수집하지 않음
+    private DataSource explainDataSource;
+    private long explainIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EXPLAIN_INTERVAL_MILLIS);
+
+    // 다음 EXPLAIN 을 실행할 수 있는 시각 (nanoTime)
+    private final AtomicLong nextExplainAt = new AtomicLong(System.nanoTime());
+
+    private final LongAdder slowCount = new LongAdder();
+    private final LongAdder explainCount = new LongAdder();
+
+    // EXPLAIN 전용 스레드
+    private final ExecutorService explainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SlowQueryDetector-explain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SlowQueryDetector(long threshold, TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative threshold=" + threshold);
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+    }
+
+    public void setParameterMasker(Function<Object, String> parameterMasker) {
+        this.parameterMasker = parameterMasker;
+    }
+
+    // 느린 SQL 을 받는 곳 - 기본은 WARN 로그
+    public void setReporter(Consumer<SlowQuery> reporter) {
+        this.reporter = reporter;
+    }
+
+    // 애플리케이션과 같은 풀을 써도 되지만, 풀이 고갈된 상황에서도 EXPLAIN 이 요청 처리를 막지 않도록 작은 별도 풀을 권장
+    public void setExplainDataSource(DataSource explainDataSource) {
+        this.explainDataSource = explainDataSource;
+    }
+
+    public void setExplainInterval(long interval, TimeUnit unit) {
+        this.explainIntervalNanos = unit.toNanos(interval);
+    }
+
+    public long getSlowCount() {
+        return slowCount.sum();
+    }
+
+    public long getExplainCount() {
+        return explainCount.sum();
+    }
+
+    // 대기 중인 EXPLAIN 까지 실행하고 기록한 뒤 종료
+    @Override
+    public void close() {
+        explainExecutor.shutdown();
+        try {
+            explainExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // PreparedStatement 를 감싼 프록시 반환 - close() 등 나머지 호출은 그대로 전달
+    public PreparedStatement wrap(Connection conn, PreparedStatement pstmt, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                SlowQueryDetector.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementHandler(conn, pstmt, sql));
+    }
+
+    private void report(Connection conn, String sql, Object[] parameters, int batchSize, long elapsedNanos) {
+        slowCount.increment();
+        try {
+            List<String> masked = new ArrayList<>(parameters.length);
+            for (Object parameter : parameters) {
+                masked.add(parameterMasker.apply(parameter));
+            }
+            List<String> maskedParameters = Collections.unmodifiableList(masked);
+            String connectionId = connectionId(conn);
+            if (tryAcquireExplain(sql)) {
+                try {
+                    explainExecutor.execute(() -> reporter.accept(
+                            new SlowQuery(sql, maskedParameters, batchSize, connectionId, elapsedNanos, explain(sql, parameters))));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // close() 이후 - EXPLAIN 없이 기록
+                }
+            }
+            reporter.accept(new SlowQuery(sql, maskedParameters, batchSize, connectionId, elapsedNanos, null));
+        } catch (RuntimeException e) {
+            // 탐지기 오류가 SQL 실행 결과에 영향을 주지 않도록 로그만 남김
+            log.warn("slow query report failed sql={}", sql, e);
+        }
+    }
+
+    // EXPLAIN 실행 허용 여부 - EXPLAIN 할 수 있는 SQL 이고, explainInterval 당 한 스레드만 통과
+    private boolean tryAcquireExplain(String sql) {
+        if (explainDataSource == null) {
+            return false;
+        }
+        String keyword = sql.trim().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+        if (!Arrays.asList("select", "insert", "update", "delete", "merge", "with").contains(keyword)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long next = nextExplainAt.get();
+        return now - next >= 0 && nextExplainAt.compareAndSet(next, now + explainIntervalNanos);
+    }
+
+    // 별도 Connection 에서 같은 파라미터로 EXPLAIN 실행 (EXPLAIN 스레드에서 호출)
+    private String explain(String sql, Object[] parameters) {
+        try (Connection conn = explainDataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1).replaceAll("\\s+", " ").trim());
+                }
+                explainCount.increment();
+                return plan.toString();
+            }
+        } catch (SQLException e) {
+            log.debug("explain failed sql={}", sql, e);
+            return null;
+        }
+    }
+
+    // 물리 Connection 의 식별자 (H2 는 "conn3: url=..." 형식이므로 앞부분만 사용)
+    private String connectionId(Connection conn) {
+        try {
+            String name = String.valueOf(conn.unwrap(Connection.class));
+            int index = name.indexOf(':');
+            return index > 0 ? name.substring(0, index) : name;
+        } catch (SQLException e) {
+            return String.valueOf(conn);
+        }
+    }
+
+    // 파라미터 수집 + 실행 시간 측정 프록시
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection conn;
+        private final PreparedStatement target;
+        private final String sql;
+
+        private Object[] parameters = new Object[0];
+        private int batchSize;
+
+        StatementHandler(Connection conn, PreparedStatement target, String sql) {
+            this.conn = conn;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters = new Object[0];
+            } else if (name.equals("addBatch") && args == null) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.startsWith("execute") && (args == null || args.length == 0)) {
+                return execute(method, name.contains("Batch"));
+            }
+            return invokeTarget(method, args);
+        }
+
+        private Object execute(Method method, boolean batch) throws Throwable {
+            long startedAt = System.nanoTime();
+            try {
+                return invokeTarget(method, null);
+            } finally {
+                long elapsedNanos = System.nanoTime() - startedAt;
+                if (elapsedNanos >= thresholdNanos) {
+                    report(conn, sql, parameters.clone(), batch ? batchSize : 0, elapsedNanos);
+                }
+                if (batch) {
+                    batchSize = 0;
+                }
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, index);
+            }
+            parameters[index - 1] = value;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
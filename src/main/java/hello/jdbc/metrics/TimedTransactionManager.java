@@ -0,0 +1,53 @@
+package hello.jdbc.metrics;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+// 트랜잭션 매니저의 시작(Connection 획득 포함), 커밋, 롤백 구간 소요 시간을 기록하는 래퍼
+public class TimedTransactionManager implements PlatformTransactionManager {
+
+    private final PlatformTransactionManager target;
+    private final LatencyRecorder beginRecorder;
+    private final LatencyRecorder commitRecorder;
+    private final LatencyRecorder rollbackRecorder;
+
+    // metricPrefix 뒤에 begin, commit, rollback 을 붙인 이름으로 기록
+    public TimedTransactionManager(PlatformTransactionManager target, LatencyRegistry latencyRegistry, String metricPrefix) {
+        this.target = target;
+        this.beginRecorder = latencyRegistry.recorder(metricPrefix + "begin");
+        this.commitRecorder = latencyRegistry.recorder(metricPrefix + "commit");
+        this.rollbackRecorder = latencyRegistry.recorder(metricPrefix + "rollback");
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        long startedAt = System.nanoTime();
+        try {
+            return target.getTransaction(definition);
+        } finally {
+            beginRecorder.recordSince(startedAt);
+        }
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        long startedAt = System.nanoTime();
+        try {
+            target.commit(status);
+        } finally {
+            commitRecorder.recordSince(startedAt);
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        long startedAt = System.nanoTime();
+        try {
+            target.rollback(status);
+        } finally {
+            rollbackRecorder.recordSince(startedAt);
+        }
+    }
+}
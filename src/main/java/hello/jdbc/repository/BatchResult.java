@@ -0,0 +1,74 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// saveAll 처리 결과
+// 청크(executeBatch 1회) 단위의 결과와 실패한 행 목록을 담는다.
+public class BatchResult {
+
+    private final List<ChunkResult> chunks = new ArrayList<>();
+
+    void add(ChunkResult chunk) {
+        chunks.add(chunk);
+    }
+
+    public List<ChunkResult> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    // 실제로 저장된 행 수
+    public int getSavedCount() {
+        return chunks.stream().mapToInt(ChunkResult::getSavedCount).sum();
+    }
+
+    // 저장에 실패한 행 목록 (청크가 롤백된 경우, 실패 원인이 된 행)
+    public List<Member> getFailedMembers() {
+        List<Member> failed = new ArrayList<>();
+        for (ChunkResult chunk : chunks) {
+            failed.addAll(chunk.getFailedMembers());
+        }
+        return failed;
+    }
+
+    // 롤백된 청크 수
+    public int getRolledBackCount() {
+        return (int) chunks.stream().filter(ChunkResult::isRolledBack).count();
+    }
+
+    public boolean isAllSaved() {
+        return chunks.stream().allMatch(chunk -> !chunk.isRolledBack() && chunk.getFailedMembers().isEmpty());
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{chunks=" + chunks.size() + ", savedCount=" + getSavedCount() + ", rolledBack=" + getRolledBackCount() + '}';
+    }
+
+    // 청크 1개의 처리 결과
+    @Getter
+    public static class ChunkResult {
+        private final int chunkIndex;
+        private final int size;
+        private final int savedCount;
+        private final boolean rolledBack;
+        private final List<Member> failedMembers;
+
+        ChunkResult(int chunkIndex, int size, int savedCount, boolean rolledBack, List<Member> failedMembers) {
+            this.chunkIndex = chunkIndex;
+            this.size = size;
+            this.savedCount = savedCount;
+            this.rolledBack = rolledBack;
+            this.failedMembers = Collections.unmodifiableList(failedMembers);
+        }
+
+        @Override
+        public String toString() {
+            return "ChunkResult{chunkIndex=" + chunkIndex + ", size=" + size + ", savedCount=" + savedCount + ", rolledBack=" + rolledBack + ", failed=" + failedMembers.size() + '}';
+        }
+    }
+}
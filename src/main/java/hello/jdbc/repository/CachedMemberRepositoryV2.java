@@ -0,0 +1,258 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.cache.CacheStats;
+import hello.jdbc.cache.MemberCache;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// MemberRepositoryV2 앞에 조회 캐시를 두는 형태
+// - findById 는 캐시를 먼저 조회하고, 없으면 DB 조회 후 캐시에 저장 (read-through)
+// - 변경 메서드는 DB 반영 후 해당 회원의 캐시를 무효화
+// - 트랜잭션이 진행중이면 조회는 캐시를 거치지 않고 (자신의 변경을 읽어야 하고, 커밋되지 않은 값을 공유 캐시에 넣으면 안 됨)
+//   변경은 즉시 한번, 트랜잭션 종료 후(afterCompletion) 한번 더 무효화한다.
+//   (트랜잭션 진행 중에 다른 스레드가 커밋 전의 값을 캐시에 넣더라도 종료 시점에 제거되고, 종료 전에 시작된 조회 결과는 저장되지 않음)
+@Slf4j
+public class CachedMemberRepositoryV2 extends MemberRepositoryV2 {
+
+    private final MemberCache memberCache;
+
+    public CachedMemberRepositoryV2(DataSource dataSource, MemberCache memberCache) {
+        super(dataSource);
+        this.memberCache = memberCache;
+    }
+
+    @Override
+    public Member save(Member member) throws SQLException {
+        try {
+            return super.save(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public Member upsert(Member member) throws SQLException {
+        try {
+            return super.upsert(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public Member findById(String memberId) throws SQLException {
+        // 트랜잭션 안의 조회 - 캐시를 거치지 않음
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return super.findById(memberId);
+        }
+
+        Member cached = memberCache.get(memberId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadStartedAt = System.nanoTime();
+        Member member = super.findById(memberId);
+        memberCache.put(member, loadStartedAt);
+        return member;
+    }
+
+    @Override
+    public MemberLookup findByIds(Collection<String> memberIds) throws SQLException {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return super.findByIds(memberIds);
+        }
+
+        // 캐시에 있는 회원은 캐시에서, 나머지만 DB 에서 한번에 조회
+        Map<String, Member> cached = new HashMap<>();
+        List<String> loadIds = new ArrayList<>();
+        for (String memberId : new LinkedHashSet<>(memberIds)) {
+            Member member = memberCache.get(memberId);
+            if (member == null) {
+                loadIds.add(memberId);
+            } else {
+                cached.put(memberId, member);
+            }
+        }
+        if (loadIds.isEmpty()) {
+            return new MemberLookup(ordered(memberIds, cached), new ArrayList<>());
+        }
+
+        long loadStartedAt = System.nanoTime();
+        MemberLookup loaded = super.findByIds(loadIds);
+        loaded.getMembers().values().forEach(member -> memberCache.put(member, loadStartedAt));
+        cached.putAll(loaded.getMembers());
+        return new MemberLookup(ordered(memberIds, cached), new ArrayList<>(loaded.getMissingIds()));
+    }
+
+    @Override
+    public void update(String memberId, Integer money) throws SQLException {
+        try {
+            super.update(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void updateIfVersion(String memberId, Integer money, int version) throws SQLException {
+        try {
+            super.updateIfVersion(memberId, money, version);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int withdraw(String memberId, Integer money) throws SQLException {
+        try {
+            return super.withdraw(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int deposit(String memberId, Integer money) throws SQLException {
+        try {
+            return super.deposit(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int[] withdrawAll(List<Transfer> transfers) throws SQLException {
+        try {
+            return super.withdrawAll(transfers);
+        } finally {
+            List<String> memberIds = new ArrayList<>(transfers.size());
+            transfers.forEach(transfer -> memberIds.add(transfer.getFromId()));
+            invalidate(memberIds);
+        }
+    }
+
+    @Override
+    public int[] depositAll(List<Transfer> transfers) throws SQLException {
+        try {
+            return super.depositAll(transfers);
+        } finally {
+            List<String> memberIds = new ArrayList<>(transfers.size());
+            transfers.forEach(transfer -> memberIds.add(transfer.getToId()));
+            invalidate(memberIds);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> addMoneyAll(Map<String, Long> amounts) throws SQLException {
+        try {
+            return super.addMoneyAll(amounts);
+        } finally {
+            invalidate(new ArrayList<>(amounts.keySet()));
+        }
+    }
+
+    // 반영 대기 입금도 조회 잔액에 포함되므로 무효화
+    @Override
+    public void addCredit(String memberId, int money) throws SQLException {
+        try {
+            super.addCredit(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void delete(String memberId) throws SQLException {
+        try {
+            super.delete(memberId);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void deleteAll() throws SQLException {
+        try {
+            super.deleteAll();
+        } finally {
+            memberCache.invalidateAll();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        memberCache.invalidateAll();
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public BatchResult saveAll(Collection<Member> members, int batchSize) throws SQLException {
+        try {
+            return super.saveAll(members, batchSize);
+        } finally {
+            List<String> memberIds = new ArrayList<>(members.size());
+            members.forEach(member -> memberIds.add(member.getMemberId()));
+            invalidate(memberIds);
+        }
+    }
+
+    // 요청한 순서로 정렬
+    private Map<String, Member> ordered(Collection<String> memberIds, Map<String, Member> members) {
+        Map<String, Member> ordered = new LinkedHashMap<>();
+        for (String memberId : memberIds) {
+            Member member = members.get(memberId);
+            if (member != null) {
+                ordered.put(memberId, member);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public int upsertAll(Collection<Member> members, int batchSize) throws SQLException {
+        try {
+            return super.upsertAll(members, batchSize);
+        } finally {
+            List<String> memberIds = new ArrayList<>(members.size());
+            members.forEach(member -> memberIds.add(member.getMemberId()));
+            invalidate(memberIds);
+        }
+    }
+
+    public CacheStats cacheStats() {
+        return memberCache.stats();
+    }
+
+    private void invalidate(String memberId) {
+        invalidate(List.of(memberId));
+    }
+
+    // 즉시 무효화하고, 트랜잭션이 진행중이면 트랜잭션 종료 후 한번 더 무효화
+    private void invalidate(List<String> memberIds) {
+        memberIds.forEach(memberCache::invalidate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    memberIds.forEach(memberCache::invalidate);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 입금이 몰리는 계좌(수수료, 정산 계좌 등)의 입금을 모아서 반영하는 쓰기 지연 버퍼
+// - credit() 은 member 행을 갱신하지 않고, 입금 의도를 journal 테이블에 insert 한다. (호출한 쪽의 트랜잭션에 참여)
+//   행마다 새 레코드를 추가하므로, 같은 계좌로 향하는 이체끼리 member 행 락을 기다리지 않는다.
+// - 주기적으로 journal 을 계좌별로 합산해서 money = money + ? 배치 1회로 반영하고, 반영한 journal 은 같은 트랜잭션에서 삭제한다.
+//   journal 이 DB 에 남아 있으므로, 프로세스가 비정상 종료되어도 다음 flush 에서 반영된다.
+// - 아직 반영되지 않은 입금액은 journal 에만 있다. Repository 의 잔액 조회가 SQL 1회로 member 값과 journal 합계를 더해서 돌려준다.
+//   (생성 시 Repository 의 creditJournal 을 켠다.)
+// - 회원 행이 없어서 반영되지 않은 journal 은 삭제하지 않고 남겨둔다. (송신자는 이미 차감되었으므로 입금을 버리지 않음)
+// - 버퍼 대상 계좌에서의 출금은 member 에 반영된 잔액만으로 판단한다. (반영 대기중인 입금은 출금 가능 잔액에 포함되지 않음)
+@Slf4j
+public class CreditBuffer implements AutoCloseable {
+
+    public static final String JOURNAL_DDL = "create table if not exists member_credit_journal (" +
+            " journal_id bigint auto_increment primary key," +
+            " member_id varchar(10) not null," +
+            " money integer not null)";
+    // 잔액 조회마다 회원별 journal 합계를 구하므로 member_id 로 찾을 수 있어야 한다. (없으면 조회 행마다 journal 전체를 읽음)
+    public static final String JOURNAL_INDEX_DDL = "create index if not exists member_credit_journal_member_id on member_credit_journal (member_id)";
+
+    private final DataSource dataSource;
+    private final MemberRepositoryV2 memberRepository;
+    private final TransactionTemplate txTemplate;
+    private final Set<String> bufferedMemberIds;
+
+    private final ScheduledExecutorService flusher;
+
+    public CreditBuffer(DataSource dataSource, MemberRepositoryV2 memberRepository, TransactionTemplate txTemplate,
+                        Collection<String> bufferedMemberIds, long flushInterval, TimeUnit unit) {
+        this.dataSource = dataSource;
+        this.memberRepository = memberRepository;
+        this.txTemplate = txTemplate;
+        this.bufferedMemberIds = Set.copyOf(bufferedMemberIds);
+        memberRepository.setCreditJournal(true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CreditBuffer-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, unit);
+    }
+
+    // journal 테이블과 member_id 인덱스 생성
+    public void createJournalTable() throws SQLException {
+        execute(JOURNAL_DDL);
+        execute(JOURNAL_INDEX_DDL);
+    }
+
+    // 버퍼 대상 계좌가 모두 있는지 확인 - 없으면 NoSuchElementException
+    // credit() 은 계좌 존재 여부를 확인하지 않으므로, 버퍼를 설정하는 시점에 호출한다.
+    public void checkAccounts() throws SQLException {
+        MemberLookup lookup = memberRepository.findByIds(bufferedMemberIds);
+        if (!lookup.isAllFound()) {
+            throw new NoSuchElementException("buffered account not found memberIds=" + lookup.getMissingIds());
+        }
+    }
+
+    public boolean isBuffered(String memberId) {
+        return bufferedMemberIds.contains(memberId);
+    }
+
+    // 입금 의도 기록 - 트랜잭션이 진행중이면 같은 트랜잭션으로 insert 된다.
+    public void credit(String memberId, int money) throws SQLException {
+        if (!isBuffered(memberId)) {
+            throw new IllegalArgumentException("not a buffered account memberId=" + memberId);
+        }
+        memberRepository.addCredit(memberId, money);
+    }
+
+    // 반영 대기중인 입금액 (커밋된 journal 합계)
+    public long getPending(String memberId) throws SQLException {
+        String sql = "select coalesce(sum(money), 0) from member_credit_journal where member_id = ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // 반영 대기 금액을 더한 회원 조회 (Repository 조회와 같음)
+    public Member findById(String memberId) throws SQLException {
+        return memberRepository.findById(memberId);
+    }
+
+    // journal 을 member 테이블에 반영 - 반영한 계좌 수 반환
+    // 커밋된 journal 만 읽고, 읽은 journal 만 삭제하므로 flush 중에 추가되는 journal 은 다음 flush 에서 반영된다.
+    // 회원 행이 없어서 갱신되지 않은 계좌의 journal 은 삭제하지 않는다.
+    // synchronized 는 이 JVM 안에서만 막아주므로, 여러 인스턴스가 동시에 flush 하는 경우는 journal 행 락(select ... for update)으로 막는다.
+    // 먼저 락을 잡은 flush 가 커밋하면 나중 flush 는 남은 journal 만 읽는다. 삭제한 행 수가 읽은 행 수와 다르면 롤백한다.
+    public synchronized int flush() {
+        return txTemplate.execute(status -> {
+            try {
+                Map<Long, String> journal = new HashMap<>();
+                Map<String, Long> sums = readJournal(journal);
+                if (sums.isEmpty()) {
+                    return 0;
+                }
+                Map<String, Integer> updated = memberRepository.addMoneyAll(sums);
+                Set<String> missing = new HashSet<>();
+                updated.forEach((memberId, resultCnt) -> {
+                    if (resultCnt == 0) {
+                        missing.add(memberId);
+                    }
+                });
+                List<Long> flushedIds = new ArrayList<>(journal.size());
+                journal.forEach((journalId, memberId) -> {
+                    if (!missing.contains(memberId)) {
+                        flushedIds.add(journalId);
+                    }
+                });
+                if (!missing.isEmpty()) {
+                    log.warn("credit journal kept, member not found memberIds={}", missing);
+                }
+                deleteJournal(flushedIds);
+                log.info("credit journal flushed entries={}, accounts={}", flushedIds.size(), sums.size() - missing.size());
+                return sums.size() - missing.size();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    // 주기 실행을 멈추고 마지막으로 한번 더 반영
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 반영하지 못한 journal 은 남아 있으므로 다음 flush 에서 다시 시도
+            log.warn("credit journal flush failed", e);
+        }
+    }
+
+    private Map<String, Long> readJournal(Map<Long, String> journal) throws SQLException {
+        String sql = "select journal_id, member_id, money from member_credit_journal for update";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
+            Map<String, Long> sums = new HashMap<>();
+            while (rs.next()) {
+                journal.put(rs.getLong(1), rs.getString(2));
+                sums.merge(rs.getString(2), rs.getLong(3), Long::sum);
+            }
+            return sums;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    private void deleteJournal(List<Long> journalIds) throws SQLException {
+        if (journalIds.isEmpty()) {
+            return;
+        }
+
+        String sql = "delete from member_credit_journal where journal_id = ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            for (Long journalId : journalIds) {
+                pstmt.setLong(1, journalId);
+                pstmt.addBatch();
+            }
+            int deleted = 0;
+            for (int resultCnt : pstmt.executeBatch()) {
+                // 드라이버가 행 수를 알려주지 않으면 1 건으로 본다.
+                deleted += resultCnt == Statement.SUCCESS_NO_INFO ? 1 : resultCnt;
+            }
+            if (deleted != journalIds.size()) {
+                // 다른 flush 가 먼저 반영하고 삭제한 journal - 이번 반영을 롤백
+                throw new IllegalStateException("credit journal already flushed expected=" + journalIds.size() + ", deleted=" + deleted);
+            }
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            pstmt.execute();
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    private void close(Connection conn, PreparedStatement pstmt, ResultSet rs) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(pstmt);
+        DataSourceUtils.releaseConnection(conn, dataSource);
+    }
+}
@@ -0,0 +1,42 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// findByIds 조회 결과
+// members 는 memberId -> Member (요청한 순서), missingIds 는 조회되지 않은 memberId (요청한 순서)
+public class MemberLookup {
+
+    private final Map<String, Member> members;
+    private final List<String> missingIds;
+
+    public MemberLookup(Map<String, Member> members, List<String> missingIds) {
+        this.members = Collections.unmodifiableMap(members);
+        this.missingIds = Collections.unmodifiableList(missingIds);
+    }
+
+    public Map<String, Member> getMembers() {
+        return members;
+    }
+
+    public List<String> getMissingIds() {
+        return missingIds;
+    }
+
+    // 조회되지 않은 memberId 이면 null
+    public Member get(String memberId) {
+        return members.get(memberId);
+    }
+
+    public boolean isAllFound() {
+        return missingIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MemberLookup{found=" + members.size() + ", missing=" + missingIds.size() + '}';
+    }
+}
@@ -0,0 +1,36 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.util.Collections;
+import java.util.List;
+
+// findPage 조회 결과
+// nextCursor 는 다음 페이지 조회 시 afterMemberId 로 넘기는 값이며, 마지막 페이지이면 null
+public class MemberPage {
+
+    private final List<Member> members;
+    private final String nextCursor;
+
+    public MemberPage(List<Member> members, String nextCursor) {
+        this.members = Collections.unmodifiableList(members);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "MemberPage{size=" + members.size() + ", nextCursor='" + nextCursor + '\'' + '}';
+    }
+}
@@ -63,7 +63,7 @@ public class MemberRepositoryV0 {
 
         log.info("SELECT =================================================================");
 
-        String sql = "select * from member where member_id = ?";
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?";
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -77,10 +77,7 @@ public class MemberRepositoryV0 {
             rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
-                return member;
+                return MemberRowMapper.INSTANCE.mapRow(rs);
             } else {
                 // 조회된 결과가 없는 경우, 예외 throw
                 throw new NoSuchElementException("member not found memberId=" + memberId);
@@ -71,7 +71,7 @@ public class MemberRepositoryV1 {
     // member 테이블 select
     public Member findById(String memberId) throws SQLException {
 
-        String sql = "select * from member where member_id = ?";
+        String sql = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?";
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -85,10 +85,7 @@ public class MemberRepositoryV1 {
             rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
-                return member;
+                return MemberRowMapper.INSTANCE.mapRow(rs);
             } else {
                 // 조회된 결과가 없는 경우, 예외 throw
                 throw new NoSuchElementException("member not found memberId=" + memberId);
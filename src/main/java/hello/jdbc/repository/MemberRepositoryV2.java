@@ -1,33 +1,236 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.connection.ReadWriteRoutingDataSource;
+import hello.jdbc.connection.StatementCache;
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.metrics.LatencyRecorder;
+import hello.jdbc.metrics.LatencyRegistry;
+import hello.jdbc.metrics.SlowQueryDetector;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
-// Connection 을 파라미터로 받는 형태
-// 하나의 Connection 을 사용하여 모든 SQL 을 실행함으로써 동일 세션 내에서의 커밋, 롤백이 가능하므로, 트랜잭션 원칙을 지킬수 있음
+// 트랜잭션 동기화 매니저를 사용하는 형태
+// DataSourceUtils 로 Connection 을 획득하므로, 트랜잭션이 진행중이면 현재 스레드에 보관된 Connection 하나로 모든 SQL 을 실행한다.
+// Connection 을 파라미터로 받지 않아도 동일 세션 내에서의 커밋, 롤백이 가능하므로, 트랜잭션 원칙을 지킬수 있음
 @Slf4j
 public class MemberRepositoryV2 {
 
+    // saveAll 기본 청크 크기 (executeBatch 1회에 담는 행 수)
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // findByIds 한 번의 IN 목록에 담는 최대 id 수 - 이보다 많으면 나누어 조회
+    public static final int MAX_IN_LIST_SIZE = 128;
+
+    // 전체 조회 기본 fetchSize (DB 에서 한번에 가져오는 행 수)
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    // 낙관적 락 version 컬럼 추가 (기존 행은 0 부터 시작)
+    public static final String VERSION_DDL = "alter table member add column if not exists version integer not null default 0";
+    public static final String DROP_VERSION_DDL = "alter table member drop column if exists version";
+
+    // 소요 시간 기록 이름 접두어 (예: member.repository.findById)
+    public static final String METRIC_PREFIX = "member.repository.";
+
+    // 실행하는 SQL - 메서드와 워밍업(statementSql, prepareStatements)이 같은 문자열을 사용해야 Statement 캐시에서 재사용된다.
+    private static final String INSERT_SQL = "insert into member (member_id, money) values ( ?, ? )";
+    private static final String UPSERT_SQL = "merge into member (member_id, money) key (member_id) values ( ?, ? )";
+    private static final String VERSIONED_UPSERT_SQL = "merge into member (member_id, money, version) key (member_id) values ( ?, ?, coalesce((select version + 1 from member where member_id = ?), 0) )";
+    private static final String FIND_BY_ID_SQL = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ?";
+    private static final String FIND_BY_ID_FOR_UPDATE_SQL = "select " + MemberRowMapper.COLUMNS + " from member where member_id = ? for update";
+    private static final String FIND_BY_ID_VERSIONED_SQL = "select " + MemberRowMapper.VERSIONED_COLUMNS + " from member where member_id = ?";
+    private static final String UPDATE_IF_VERSION_SQL = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+    private static final String UPDATE_SQL = "update member set money = ? where member_id = ?";
+    private static final String VERSIONED_UPDATE_SQL = "update member set money = ?, version = version + 1 where member_id = ?";
+    private static final String DELETE_SQL = "delete from member where member_id = ?";
+    private static final String DELETE_ALL_SQL = "delete from member";
+    private static final String FIND_FIRST_PAGE_SQL = "select " + MemberRowMapper.COLUMNS + " from member order by member_id limit ?";
+    private static final String FIND_PAGE_SQL = "select " + MemberRowMapper.COLUMNS + " from member where member_id > ? order by member_id limit ?";
+    private static final String FIND_ALL_SQL = "select " + MemberRowMapper.COLUMNS + " from member";
+    private static final String WITHDRAW_SQL = "update member set money = money - ? where member_id = ? and money >= ?";
+    private static final String DEPOSIT_SQL = "update member set money = money + ? where member_id = ?";
+    private static final String VERSIONED_WITHDRAW_SQL = "update member set money = money - ?, version = version + 1 where member_id = ? and money >= ?";
+    private static final String VERSIONED_DEPOSIT_SQL = "update member set money = money + ?, version = version + 1 where member_id = ?";
+    // 반영 대기 입금을 포함한 조회 (creditJournal 사용 시)
+    private static final String CREDITED_FIND_BY_ID_SQL = "select " + MemberRowMapper.CREDITED_COLUMNS + " from member where member_id = ?";
+    private static final String CREDITED_FIND_FIRST_PAGE_SQL = "select " + MemberRowMapper.CREDITED_COLUMNS + " from member order by member_id limit ?";
+    private static final String CREDITED_FIND_PAGE_SQL = "select " + MemberRowMapper.CREDITED_COLUMNS + " from member where member_id > ? order by member_id limit ?";
+    private static final String CREDITED_FIND_ALL_SQL = "select " + MemberRowMapper.CREDITED_COLUMNS + " from member";
+    private static final String ADD_CREDIT_SQL = "insert into member_credit_journal (member_id, money) values ( ?, ? )";
+
     private final DataSource dataSource;
 
+    // PreparedStatement 캐시 (설정하지 않으면 매번 prepareStatement)
+    private StatementCache statementCache;
+
+    // 느린 SQL 탐지 (설정하지 않으면 PreparedStatement 를 감싸지 않음)
+    private SlowQueryDetector slowQueryDetector;
+
+    // 전체 조회(forEach, streamAll) 시 사용할 fetchSize
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    // 낙관적 락 사용 여부 - 사용하면 잔액을 바꾸는 모든 update, merge 가 version 을 1 증가시킨다.
+    // (updateIfVersion 을 쓰지 않는 갱신도 version 을 올려야, 그 사이에 조회한 쪽의 갱신이 충돌로 감지된다.)
+    private boolean versioning;
+
+    // 쓰기 지연 입금(CreditBuffer) 사용 여부 - 사용하면 잔액 조회가 member_credit_journal 의 반영 대기 입금을 SQL 1회로 함께 더한다.
+    // (member 반영과 journal 삭제는 같은 트랜잭션이므로, 조회 시점과 관계없이 입금이 빠지거나 두 번 더해지지 않는다.)
+    private boolean creditJournal;
+
+    // 소요 시간 기록 - 메서드별 전체 시간, Connection 획득 구간, SQL 실행 구간
+    // 호출마다 이름으로 조회하지 않도록 LatencyRecorder 를 미리 꺼내서 보관
+    private final LatencyRecorder[] operationRecorders = new LatencyRecorder[Operation.values().length];
+    private LatencyRecorder acquireRecorder;
+    private LatencyRecorder executeRecorder;
+
     @Autowired
     public MemberRepositoryV2(DataSource dataSource) {
         log.info("datasource={}, getClass={}", dataSource, dataSource.getClass());
         this.dataSource = dataSource;
+        setLatencyRegistry(LatencyRegistry.NOOP);
+    }
+
+    @Autowired(required = false)
+    public void setStatementCache(StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    @Autowired(required = false)
+    public void setSlowQueryDetector(SlowQueryDetector slowQueryDetector) {
+        this.slowQueryDetector = slowQueryDetector;
+    }
+
+    @Autowired(required = false)
+    public void setLatencyRegistry(LatencyRegistry latencyRegistry) {
+        for (Operation operation : Operation.values()) {
+            operationRecorders[operation.ordinal()] = latencyRegistry.recorder(METRIC_PREFIX + operation.metricName);
+        }
+        this.acquireRecorder = latencyRegistry.recorder(METRIC_PREFIX + "connection.acquire");
+        this.executeRecorder = latencyRegistry.recorder(METRIC_PREFIX + "execute");
+    }
+
+    // member 테이블에 version 컬럼이 있어야 한다. (VERSION_DDL, createVersionColumn)
+    public void setVersioning(boolean versioning) {
+        this.versioning = versioning;
+    }
+
+    public boolean isVersioning() {
+        return versioning;
+    }
+
+    // member_credit_journal 테이블이 있어야 한다. (CreditBuffer 가 생성 시 설정)
+    public void setCreditJournal(boolean creditJournal) {
+        this.creditJournal = creditJournal;
+    }
+
+    public boolean isCreditJournal() {
+        return creditJournal;
+    }
+
+    public void createVersionColumn() throws SQLException {
+        executeDdl(VERSION_DDL);
+    }
+
+    public void dropVersionColumn() throws SQLException {
+        executeDdl(DROP_VERSION_DDL);
+    }
+
+    private void executeDdl(String ddl) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = this.getConnection();
+            pstmt = conn.prepareStatement(ddl);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    // 이 Repository 가 PreparedStatement 로 실행하는 SQL 목록 (현재 versioning 설정 기준)
+    // findByIds 는 IN 목록 크기별 SQL 을 모두 포함하고, 커서 조회(forEach, streamAll)는 Statement 캐시를 쓰지 않으므로 제외한다.
+    public List<String> statementSql() {
+        List<String> sqls = new ArrayList<>();
+        sqls.add(INSERT_SQL);
+        sqls.add(upsertSql());
+        sqls.add(findByIdSql());
+        sqls.add(FIND_BY_ID_FOR_UPDATE_SQL);
+        if (versioning) {
+            sqls.add(FIND_BY_ID_VERSIONED_SQL);
+            sqls.add(UPDATE_IF_VERSION_SQL);
+        }
+        for (int inListSize = 1; inListSize <= MAX_IN_LIST_SIZE; inListSize <<= 1) {
+            sqls.add(findByIdsSql(inListSize));
+        }
+        sqls.add(updateSql());
+        sqls.add(DELETE_SQL);
+        sqls.add(DELETE_ALL_SQL);
+        sqls.add(findPageSql(null));
+        sqls.add(findPageSql(""));
+        sqls.add(withdrawSql());
+        sqls.add(depositSql());
+        if (creditJournal) {
+            sqls.add(ADD_CREDIT_SQL);
+        }
+        return sqls;
+    }
+
+    // 워밍업 - statementSql() 의 SQL 을 conn 에서 모두 prepare 한 뒤 닫음 (실행하지 않음)
+    // Statement 캐시가 설정되어 있으면 conn 의 캐시가 채워지고, 아니면 드라이버와 DB 의 SQL 파싱 경로만 미리 실행된다.
+    // prepare 에 실패한 SQL (테이블이 아직 없는 경우 등)은 건너뛰고, 반환값은 prepare 에 성공한 SQL 수
+    public int prepareStatements(Connection conn) {
+        int prepared = 0;
+        for (String sql : statementSql()) {
+            PreparedStatement pstmt = null;
+            try {
+                pstmt = this.prepareStatement(conn, sql);
+                prepared++;
+            } catch (SQLException e) {
+                log.warn("statement warmup failed sql={}, message={}", sql, e.getMessage());
+            } finally {
+                JdbcUtils.closeStatement(pstmt);
+            }
+        }
+        return prepared;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be positive fetchSize=" + fetchSize);
+        }
+        this.fetchSize = fetchSize;
     }
 
     // member 테이블 insert
     public Member save(Member member) throws SQLException {
 
+        long startedAt = System.nanoTime();
+
         // sql
-        String sql = "insert into member (member_id, money) values ( ?, ? )";
+        String sql = INSERT_SQL;
 
         // connection 인터페이스
         Connection conn = null;
@@ -43,7 +246,7 @@ public class MemberRepositoryV2 {
             log.info("connection={}", conn.getClass());
 
             // Connection 에서 Statement 생성
-            pstmt = conn.prepareStatement(sql);
+            pstmt = this.prepareStatement(conn, sql);
 
             log.info("pstmt={}", pstmt.getClass());
 
@@ -52,7 +255,7 @@ public class MemberRepositoryV2 {
             pstmt.setInt(2, member.getMoney());
 
             // Statement 실행
-            int resultCnt = pstmt.executeUpdate();
+            int resultCnt = executeUpdate(pstmt);
             log.info("resultCnt={}", resultCnt);
 
             // 반환
@@ -62,31 +265,59 @@ public class MemberRepositoryV2 {
             log.error("DB error", e);
             throw e;
         } finally {
+            record(Operation.SAVE, startedAt);
             // JDBC 인스턴스 반환은 finally 에서 실행
             this.close(conn, pstmt, rs);
         }
     }
 
+    // member 테이블 insert 또는 update - 같은 member_id 가 있으면 money 를 갱신하고, 없으면 insert
+    // 조회 후 save / update 를 고르는 대신 MERGE 1회로 처리한다.
+    public Member upsert(Member member) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = upsertSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            bindUpsert(pstmt, member);
+            int resultCnt = executeUpdate(pstmt);
+            log.info("resultCnt={}", resultCnt);
+            return member;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.UPSERT, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
     // member 테이블 select
     public Member findById(String memberId) throws SQLException {
 
-        String sql = "select * from member where member_id = ?";
+        long startedAt = System.nanoTime();
+
+        String sql = findByIdSql();
 
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            conn = this.getConnection();
-            pstmt = conn.prepareStatement(sql);
+            conn = this.getReadConnection();
+            pstmt = this.prepareStatement(conn, sql);
             pstmt.setString(1, memberId);
-            rs = pstmt.executeQuery();
+            rs = executeQuery(pstmt);
 
             if (rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
-                return member;
+                return MemberRowMapper.INSTANCE.mapRow(rs);
             } else {
                 // 조회된 결과가 없는 경우, 예외 throw
                 throw new NoSuchElementException("member not found memberId=" + memberId);
@@ -96,14 +327,206 @@ public class MemberRepositoryV2 {
             log.error("DB error", e);
             throw e;
         } finally {
+            record(Operation.FIND_BY_ID, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 select ... for update - 조회한 행에 트랜잭션 종료 시점까지 쓰기 락을 건다.
+    // 트랜잭션 안에서 사용해야 의미가 있으며, 락을 얻지 못하면 DB 의 락 대기 시간 초과 또는 교착 상태 예외가 발생한다.
+    public Member findByIdForUpdate(String memberId) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = FIND_BY_ID_FOR_UPDATE_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setString(1, memberId);
+            rs = executeQuery(pstmt);
+
+            if (rs.next()) {
+                return MemberRowMapper.INSTANCE.mapRow(rs);
+            } else {
+                throw new NoSuchElementException("member not found memberId=" + memberId);
+            }
+
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FIND_BY_ID_FOR_UPDATE, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 select - version 포함 (낙관적 락)
+    // 행 락 없이 조회하고, 갱신은 조회한 version 으로 updateIfVersion 을 호출한다.
+    public Member findByIdVersioned(String memberId) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = FIND_BY_ID_VERSIONED_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setString(1, memberId);
+            rs = executeQuery(pstmt);
+
+            if (rs.next()) {
+                return MemberRowMapper.VERSIONED.mapRow(rs);
+            } else {
+                throw new NoSuchElementException("member not found memberId=" + memberId);
+            }
+
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FIND_BY_ID_VERSIONED, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 update - version 이 조회 시점과 같을 때만 갱신 (compare-and-set), 갱신하면 version 1 증가
+    // 그 사이에 다른 트랜잭션이 먼저 갱신했으면 MemberVersionConflictException
+    public void updateIfVersion(String memberId, Integer money, int version) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = UPDATE_IF_VERSION_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, version);
+            int resultCnt = executeUpdate(pstmt);
+            if (resultCnt == 0) {
+                throw new MemberVersionConflictException(memberId, version);
+            }
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.UPDATE_IF_VERSION, startedAt);
             close(conn, pstmt, rs);
         }
     }
 
+    // member 테이블 다건 select - memberId 목록을 IN 목록으로 나누어 하나의 Connection 으로 조회
+    // 없는 회원은 예외 없이 결과의 missingIds 로 알려준다. (중복된 memberId 는 한 번만 조회)
+    // IN 목록의 자리 수(?)는 2의 거듭제곱으로 맞추고 남는 자리는 마지막 id 로 채워서,
+    // id 개수가 달라도 SQL 종류가 몇 개로 고정되도록 한다. (Statement 캐시, DB 의 실행 계획 재사용)
+    public MemberLookup findByIds(Collection<String> memberIds) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        Map<String, Member> found = new HashMap<>();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            if (!distinctIds.isEmpty()) {
+                conn = this.getReadConnection();
+            }
+            for (int from = 0; from < distinctIds.size(); from += MAX_IN_LIST_SIZE) {
+                List<String> chunk = distinctIds.subList(from, Math.min(from + MAX_IN_LIST_SIZE, distinctIds.size()));
+                int inListSize = inListSize(chunk.size());
+                pstmt = this.prepareStatement(conn, findByIdsSql(inListSize));
+                for (int i = 0; i < inListSize; i++) {
+                    pstmt.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+                rs = executeQuery(pstmt);
+                while (rs.next()) {
+                    Member member = MemberRowMapper.INSTANCE.mapRow(rs);
+                    found.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(pstmt);
+                rs = null;
+                pstmt = null;
+            }
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FIND_BY_IDS, startedAt);
+            close(conn, pstmt, rs);
+        }
+
+        Map<String, Member> members = new LinkedHashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String memberId : distinctIds) {
+            Member member = found.get(memberId);
+            if (member == null) {
+                missingIds.add(memberId);
+            } else {
+                members.put(memberId, member);
+            }
+        }
+        return new MemberLookup(members, missingIds);
+    }
+
+    private int inListSize(int size) {
+        if (size == 1) {
+            return 1;
+        }
+        return Math.min(Integer.highestOneBit(size - 1) << 1, MAX_IN_LIST_SIZE);
+    }
+
+    private String findByIdsSql(int inListSize) {
+        String columns = creditJournal ? MemberRowMapper.CREDITED_COLUMNS : MemberRowMapper.COLUMNS;
+        return "select " + columns + " from member where member_id in (" + placeholders(inListSize) + ")";
+    }
+
+    private String findByIdSql() {
+        return creditJournal ? CREDITED_FIND_BY_ID_SQL : FIND_BY_ID_SQL;
+    }
+
+    private String findPageSql(String afterMemberId) {
+        if (afterMemberId == null) {
+            return creditJournal ? CREDITED_FIND_FIRST_PAGE_SQL : FIND_FIRST_PAGE_SQL;
+        }
+        return creditJournal ? CREDITED_FIND_PAGE_SQL : FIND_PAGE_SQL;
+    }
+
+    private String findAllSql() {
+        return creditJournal ? CREDITED_FIND_ALL_SQL : FIND_ALL_SQL;
+    }
+
+    private String placeholders(int size) {
+        StringBuilder sb = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.toString();
+    }
+
     // member 테이블 update
     public void update(String memberId, Integer money) throws SQLException {
 
-        String sql = "update member set money = ? where member_id = ?";
+        long startedAt = System.nanoTime();
+
+        String sql = updateSql();
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -111,15 +534,16 @@ public class MemberRepositoryV2 {
 
         try {
             conn = this.getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = this.prepareStatement(conn, sql);
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
-            int resultCnt = pstmt.executeUpdate();
+            int resultCnt = executeUpdate(pstmt);
             log.info("resultCnt={}", resultCnt);
         } catch (SQLException e) {
             log.error("DB error", e);
             throw e;
         } finally {
+            record(Operation.UPDATE, startedAt);
             close(conn, pstmt, rs);
         }
     }
@@ -127,7 +551,9 @@ public class MemberRepositoryV2 {
     // member 테이블 delete
     public void delete(String memberId) throws SQLException {
 
-        String sql = "delete from member where member_id = ?";
+        long startedAt = System.nanoTime();
+
+        String sql = DELETE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -135,123 +561,698 @@ public class MemberRepositoryV2 {
 
         try {
             conn = this.getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = this.prepareStatement(conn, sql);
             pstmt.setString(1, memberId);
-            int resultCnt = pstmt.executeUpdate();
+            int resultCnt = executeUpdate(pstmt);
             log.info("resultCnt={}", resultCnt);
         } catch (SQLException e) {
             log.error("DB error", e);
             throw e;
         } finally {
+            record(Operation.DELETE, startedAt);
             close(conn, pstmt, rs);
         }
     }
 
     // member 테이블 전체 행 삭제
     public void deleteAll() throws SQLException {
-        String sql = "delete from member";
+
+        long startedAt = System.nanoTime();
+        String sql = DELETE_ALL_SQL;
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            conn = dataSource.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            int resultCnt = pstmt.executeUpdate();
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            int resultCnt = executeUpdate(pstmt);
             log.info("resultCnt={}", resultCnt);
         } catch (SQLException e) {
             log.error("DB error", e);
             throw e;
         } finally {
+            record(Operation.DELETE_ALL, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 페이지 조회 - member_id 순서로 afterMemberId 다음 행부터 limit 건
+    // OFFSET 방식은 앞 페이지의 행을 모두 읽고 버리므로 뒤 페이지로 갈수록 느려진다.
+    // 마지막 키(member_id) 다음부터 인덱스를 탐색(seek)하므로, 몇 번째 페이지이든 비용이 같다.
+    // afterMemberId 가 null 이면 첫 페이지, 다음 페이지는 반환된 nextCursor 로 조회한다.
+    public MemberPage findPage(String afterMemberId, int limit) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive limit=" + limit);
+        }
+
+        String sql = findPageSql(afterMemberId);
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getReadConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            int index = 1;
+            if (afterMemberId != null) {
+                pstmt.setString(index++, afterMemberId);
+            }
+            // 다음 페이지 존재 여부를 알기 위해 1건 더 조회
+            pstmt.setInt(index, limit + 1);
+            rs = executeQuery(pstmt);
+
+            List<Member> members = new ArrayList<>(limit);
+            boolean hasNext = false;
+            while (rs.next()) {
+                if (members.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                members.add(MemberRowMapper.INSTANCE.mapRow(rs));
+            }
+            String nextCursor = hasNext ? members.get(members.size() - 1).getMemberId() : null;
+            return new MemberPage(members, nextCursor);
+
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FIND_PAGE, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 전체 조회 - 한 행씩 action 에 전달
+    // 전체를 List 로 만들지 않고 커서로 읽으므로, 테이블 크기와 관계없이 fetchSize 만큼의 행만 메모리에 올라온다.
+    public void forEach(Consumer<Member> action) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = findAllSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getReadConnection();
+            pstmt = prepareCursor(conn, sql);
+            rs = executeQuery(pstmt);
+            while (rs.next()) {
+                action.accept(MemberRowMapper.INSTANCE.mapRow(rs));
+            }
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FOR_EACH, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 전체 조회 - 한 행씩 컬럼 값을 callback 에 전달
+    // forEach 와 같지만 행마다 Member 를 만들지 않으므로, 합계 / 집계처럼 값만 필요한 전체 스캔에 사용한다.
+    public void forEachRow(MemberRowCallback callback) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = findAllSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getReadConnection();
+            pstmt = prepareCursor(conn, sql);
+            rs = executeQuery(pstmt);
+            while (rs.next()) {
+                MemberRowMapper.INSTANCE.processRow(rs, callback);
+            }
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.FOR_EACH_ROW, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // member 테이블 전체 조회 - Stream 으로 반환
+    // Connection, Statement, ResultSet 은 Stream 을 close 할 때 종료되므로, 반드시 try-with-resources 로 사용해야 한다.
+    // 조회 중 발생한 SQLException 은 IllegalStateException 으로 감싸서 던진다.
+    public Stream<Member> streamAll() throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = findAllSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getReadConnection();
+            pstmt = prepareCursor(conn, sql);
+            rs = executeQuery(pstmt);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            record(Operation.STREAM_ALL, startedAt);
+            close(conn, pstmt, rs);
+            throw e;
+        }
+
+        Connection streamConn = conn;
+        PreparedStatement streamPstmt = pstmt;
+        ResultSet streamRs = rs;
+
+        Spliterator<Member> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Member> action) {
+                try {
+                    if (!streamRs.next()) {
+                        return false;
+                    }
+                    action.accept(MemberRowMapper.INSTANCE.mapRow(streamRs));
+                    return true;
+                } catch (SQLException e) {
+                    log.error("DB error", e);
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> {
+                    record(Operation.STREAM_ALL, startedAt);
+                    close(streamConn, streamPstmt, streamRs);
+                });
+    }
+
+    // 낙관적 락 사용 시 SET 절에 version 증가가 있는 SQL
+    private String updateSql() {
+        return versioning ? VERSIONED_UPDATE_SQL : UPDATE_SQL;
+    }
+
+    private String withdrawSql() {
+        return versioning ? VERSIONED_WITHDRAW_SQL : WITHDRAW_SQL;
+    }
+
+    private String depositSql() {
+        return versioning ? VERSIONED_DEPOSIT_SQL : DEPOSIT_SQL;
+    }
+
+    // 낙관적 락 사용 시 갱신되는 행의 version 을 1 증가 (새 행은 0)
+    private String upsertSql() {
+        return versioning
+                ? VERSIONED_UPSERT_SQL
+                : UPSERT_SQL;
+    }
+
+    private void bindUpsert(PreparedStatement pstmt, Member member) throws SQLException {
+        pstmt.setString(1, member.getMemberId());
+        pstmt.setInt(2, member.getMoney());
+        if (versioning) {
+            pstmt.setString(3, member.getMemberId());
+        }
+    }
+
+    // 커서 조회용 PreparedStatement - 전진 전용, 읽기 전용 커서와 fetchSize 설정
+    // 조회가 끝날 때까지 오래 사용하므로 Statement 캐시를 사용하지 않는다.
+    private PreparedStatement prepareCursor(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(fetchSize);
+        return detectSlowQuery(conn, pstmt, sql);
+    }
+
+    // member 테이블 다건 insert - 기본 청크 크기 사용
+    public BatchResult saveAll(Collection<Member> members) throws SQLException {
+        return saveAll(members, DEFAULT_BATCH_SIZE);
+    }
+
+    // member 테이블 다건 insert
+    // 하나의 Connection, 하나의 PreparedStatement 를 재사용하여 청크 단위로 addBatch / executeBatch 실행
+    // 청크마다 커밋하고, 청크 내에서 오류가 발생하면 해당 청크만 롤백한 뒤 다음 청크를 계속 처리한다.
+    // 트랜잭션이 진행중이면 커밋하지 않고 청크마다 Savepoint 를 두어, 실패한 청크만 Savepoint 로 롤백한다.
+    public BatchResult saveAll(Collection<Member> members, int batchSize) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        validateBatchSize(batchSize);
+
+        String sql = INSERT_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        boolean transactional = TransactionSynchronizationManager.isActualTransactionActive();
+        boolean autoCommit = true;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+
+            if (transactional) {
+                BatchResult result = saveAllInTransaction(conn, pstmt, members, batchSize);
+                log.info("saveAll result={}", result);
+                return result;
+            }
+
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            BatchResult result = new BatchResult();
+            for (List<Member> chunk : chunks(members, batchSize)) {
+                BatchResult.ChunkResult chunkResult = executeChunk(pstmt, chunk, result.getChunks().size());
+                if (chunkResult.isRolledBack()) {
+                    conn.rollback();
+                } else {
+                    conn.commit();
+                }
+                result.add(chunkResult);
+            }
+            log.info("saveAll result={}", result);
+            return result;
+
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            if (conn != null && !transactional) {
+                try {conn.rollback();} catch (SQLException ex) {log.error("Rollback error", ex);}
+            }
+            throw e;
+        } finally {
+            record(Operation.SAVE_ALL, startedAt);
+            // Connection 을 풀에 반환하기 전에 AutoCommit 상태 원복
+            if (conn != null && !transactional) {
+                try {conn.setAutoCommit(autoCommit);} catch (SQLException e) {log.error("AutoCommit restore error", e);}
+            }
             close(conn, pstmt, rs);
         }
     }
 
     // DataSource 를 이용하여 Connection 을 얻는 메서드
+    // 트랜잭션이 진행중이면 트랜잭션 동기화 매니저가 현재 스레드에 보관한 Connection 을 그대로 사용한다.
     private Connection getConnection() throws SQLException {
-        Connection connection = dataSource.getConnection();
+        long startedAt = System.nanoTime();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        acquireRecorder.recordSince(startedAt);
         log.info("connection={}, getClass={}", connection, connection.getClass());
         return connection;
     }
 
+    // 조회용 Connection - DataSource 가 ReadWriteRoutingDataSource 이면 트랜잭션 밖의 조회는 읽기 복제본으로 보내진다.
+    private Connection getReadConnection() throws SQLException {
+        return ReadWriteRoutingDataSource.withReadHint(this::getConnection);
+    }
+
+    // SQL 실행 - 실행 구간 소요 시간 기록
+    private int executeUpdate(PreparedStatement pstmt) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            return pstmt.executeUpdate();
+        } finally {
+            executeRecorder.recordSince(startedAt);
+        }
+    }
+
+    private ResultSet executeQuery(PreparedStatement pstmt) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            return pstmt.executeQuery();
+        } finally {
+            executeRecorder.recordSince(startedAt);
+        }
+    }
+
+    private int[] executeBatch(PreparedStatement pstmt) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            return pstmt.executeBatch();
+        } finally {
+            executeRecorder.recordSince(startedAt);
+        }
+    }
+
+    private void record(Operation operation, long startedAt) {
+        operationRecorders[operation.ordinal()].recordSince(startedAt);
+    }
+
+    // PreparedStatement 생성 - 캐시가 설정되어 있으면 캐시에서 재사용
+    // 캐시된 PreparedStatement 도 close() 로 반환하므로, 호출하는 쪽의 종료 코드는 그대로 사용한다.
+    private PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        if (statementCache == null) {
+            return detectSlowQuery(conn, conn.prepareStatement(sql), sql);
+        }
+        return detectSlowQuery(conn, statementCache.prepare(conn, sql), sql);
+    }
+
+    // 느린 SQL 탐지기가 설정되어 있으면 PreparedStatement 를 감싸서 실행 시간을 측정
+    private PreparedStatement detectSlowQuery(Connection conn, PreparedStatement pstmt, String sql) {
+        if (slowQueryDetector == null) {
+            return pstmt;
+        }
+        return slowQueryDetector.wrap(conn, pstmt, sql);
+    }
+
     // JDBC Connection, Statement, ResultSet 인스턴스 종료
     // 역순으로 종료
+    // 트랜잭션에 참여중인 Connection 은 닫지 않고, 트랜잭션 종료 시점에 트랜잭션 매니저가 반환한다.
     private void close( Connection conn, Statement stmt, ResultSet rs) {
         JdbcUtils.closeResultSet(rs);
         JdbcUtils.closeStatement(stmt);
-        JdbcUtils.closeConnection(conn);
+        DataSourceUtils.releaseConnection(conn, dataSource);
     }
 
-    /*-------------------------------------------------------------------------------------------------------------
-    아래부터가 Connection 을 서비스 계층으로부터 받아서 처리하는 메서드
-    -------------------------------------------------------------------------------------------------------------*/
+    // member 테이블 잔액 차감
+    // 조회 없이 DB 에서 상대값으로 차감하고, 잔액이 부족하면 갱신하지 않는다.
+    // 반환값(갱신된 행 수)이 0 이면 회원이 없거나 잔액이 부족한 경우
+    public int withdraw(String memberId, Integer money) throws SQLException {
 
-    // member 테이블 select - 커넥션을 파라미터로 받음
-    public Member findById(Connection conn, String memberId) throws SQLException {
+        long startedAt = System.nanoTime();
 
-        String sql = "select * from member where member_id = ?";
+        String sql = withdrawSql();
 
-        //Connection conn = null; // 커넥션은 파라미터 값 사용
+        Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            //conn = this.getConnection(); // 커넥션은 파라미터 값 사용
-            log.info("connection={}, getClass={}", conn, conn.getClass());
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, memberId);
-            rs = pstmt.executeQuery();
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, money);
+            int resultCnt = executeUpdate(pstmt);
+            log.info("resultCnt={}", resultCnt);
+            return resultCnt;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.WITHDRAW, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
 
-            if (rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
-                return member;
-            } else {
-                // 조회된 결과가 없는 경우, 예외 throw
-                throw new NoSuchElementException("member not found memberId=" + memberId);
+    // member 테이블 잔액 증가
+    // 반환값(갱신된 행 수)이 0 이면 회원이 없는 경우
+    public int deposit(String memberId, Integer money) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = depositSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            int resultCnt = executeUpdate(pstmt);
+            log.info("resultCnt={}", resultCnt);
+            return resultCnt;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.DEPOSIT, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // 다건 잔액 차감 - 이체 목록의 fromId 에서 money 만큼 차감 (addBatch / executeBatch 1회)
+    // 배치 안의 SQL 은 순서대로 실행되므로, 같은 계좌에서 여러 번 차감해도 각 차감 시점의 잔액으로 조건을 확인한다.
+    // 반환값은 이체별 갱신된 행 수 (0 이면 회원이 없거나 잔액이 부족한 경우)
+    public int[] withdrawAll(List<Transfer> transfers) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            return executeTransferBatch(withdrawSql(), transfers, true);
+        } finally {
+            record(Operation.WITHDRAW_ALL, startedAt);
+        }
+    }
+
+    // 다건 잔액 증가 - 이체 목록의 toId 에 money 만큼 증가
+    // 반환값은 이체별 갱신된 행 수 (0 이면 회원이 없는 경우)
+    public int[] depositAll(List<Transfer> transfers) throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            return executeTransferBatch(depositSql(), transfers, false);
+        } finally {
+            record(Operation.DEPOSIT_ALL, startedAt);
+        }
+    }
+
+    // 다건 잔액 증가 - 회원별 증가 금액 (memberId -> money) 을 배치 1회로 반영
+    // 반환값은 회원별 갱신된 행 수 (memberId -> 행 수, 0 이면 회원이 없는 경우)
+    public Map<String, Integer> addMoneyAll(Map<String, Long> amounts) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = depositSql();
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            List<String> memberIds = new ArrayList<>(amounts.size());
+            for (Map.Entry<String, Long> amount : amounts.entrySet()) {
+                pstmt.setLong(1, amount.getValue());
+                pstmt.setString(2, amount.getKey());
+                pstmt.addBatch();
+                memberIds.add(amount.getKey());
+            }
+            int[] resultCnts = executeBatch(pstmt);
+            Map<String, Integer> updated = new LinkedHashMap<>();
+            for (int i = 0; i < resultCnts.length; i++) {
+                updated.put(memberIds.get(i), resultCnts[i] == Statement.SUCCESS_NO_INFO ? 1 : resultCnts[i]);
             }
+            log.info("resultCnt={}", updated);
+            return updated;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            record(Operation.ADD_MONEY_ALL, startedAt);
+            close(conn, pstmt, rs);
+        }
+    }
 
+    // 반영 대기 입금 기록 - member 행을 갱신하지 않고 member_credit_journal 에 insert (CreditBuffer 에서 사용)
+    public void addCredit(String memberId, int money) throws SQLException {
+
+        long startedAt = System.nanoTime();
+
+        String sql = ADD_CREDIT_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            pstmt.setString(1, memberId);
+            pstmt.setInt(2, money);
+            executeUpdate(pstmt);
         } catch (SQLException e) {
             log.error("DB error", e);
             throw e;
         } finally {
-            //close(conn, pstmt, rs); // 하나의 세션으로 트랜잭션을 실행해야 하므로, Connection 은 종료하지 않음.
-            // 세션 단위로 COMMIT, ROLLBACK 이 일어나므로 원자성을 위해서는 하나의 트랜잭션은 하나의 세션안에서 모든 작업이 이루어져야 한다.
-            // Connection 은 서비스 계층에서 하나를 생성해서 repository 접근시마다 제공하며, 모든 작업이 끝나면 서비스 계층에서 생성한 한개의 Connection 을 종료한다.
-            this.close(pstmt, rs);
+            record(Operation.ADD_CREDIT, startedAt);
+            close(conn, pstmt, rs);
         }
     }
 
-    // member 테이블 update
-    public void update(Connection conn, String memberId, Integer money) throws SQLException {
+    // member 테이블 다건 insert 또는 update - 기본 청크 크기 사용
+    public int upsertAll(Collection<Member> members) throws SQLException {
+        return upsertAll(members, DEFAULT_BATCH_SIZE);
+    }
+
+    // member 테이블 다건 insert 또는 update - 청크 단위 MERGE 배치
+    // MERGE 는 여러 번 실행해도 결과가 같으므로, 중간에 실패하면 커밋된 청크와 관계없이 전체를 다시 실행하면 된다.
+    // 반환값은 반영된 행 수 합계
+    public int upsertAll(Collection<Member> members, int batchSize) throws SQLException {
 
-        String sql = "update member set money = ? where member_id = ?";
+        validateBatchSize(batchSize);
 
-        //Connection conn = null;
+        long startedAt = System.nanoTime();
+
+        String sql = upsertSql();
+
+        Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            //conn = this.getConnection();
-            log.info("connection={}, getClass={}", conn, conn.getClass());
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, money);
-            pstmt.setString(2, memberId);
-            int resultCnt = pstmt.executeUpdate();
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            int resultCnt = 0;
+            for (List<Member> chunk : chunks(members, batchSize)) {
+                for (Member member : chunk) {
+                    bindUpsert(pstmt, member);
+                    pstmt.addBatch();
+                }
+                resultCnt += countSaved(executeBatch(pstmt));
+            }
             log.info("resultCnt={}", resultCnt);
+            return resultCnt;
         } catch (SQLException e) {
             log.error("DB error", e);
             throw e;
         } finally {
-            //close(conn, pstmt, rs);
-            close(pstmt, rs);
+            record(Operation.UPSERT_ALL, startedAt);
+            close(conn, pstmt, rs);
         }
     }
 
-    // Connection 은 제외하고, Statement, ResultSet 만 종료
-    private void close(Statement stmt, ResultSet rs) {
-        JdbcUtils.closeStatement(stmt);
-        JdbcUtils.closeResultSet(rs);
+    private int[] executeTransferBatch(String sql, List<Transfer> transfers, boolean withdraw) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.getConnection();
+            pstmt = this.prepareStatement(conn, sql);
+            for (Transfer transfer : transfers) {
+                pstmt.setInt(1, transfer.getMoney());
+                pstmt.setString(2, withdraw ? transfer.getFromId() : transfer.getToId());
+                if (withdraw) {
+                    pstmt.setInt(3, transfer.getMoney());
+                }
+                pstmt.addBatch();
+            }
+            int[] resultCnts = executeBatch(pstmt);
+            log.info("transfer batch size={}", resultCnts.length);
+            return resultCnts;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // 트랜잭션 안에서의 다건 insert - 커밋, 롤백은 트랜잭션 매니저의 몫이므로, 청크 단위 롤백은 Savepoint 로 처리한다.
+    private BatchResult saveAllInTransaction(Connection conn, PreparedStatement pstmt, Collection<Member> members, int batchSize) throws SQLException {
+        BatchResult result = new BatchResult();
+        for (List<Member> chunk : chunks(members, batchSize)) {
+            Savepoint savepoint = conn.setSavepoint();
+            BatchResult.ChunkResult chunkResult = executeChunk(pstmt, chunk, result.getChunks().size());
+            if (chunkResult.isRolledBack()) {
+                conn.rollback(savepoint);
+            } else {
+                conn.releaseSavepoint(savepoint);
+            }
+            result.add(chunkResult);
+        }
+        return result;
+    }
+
+    // 청크 1개를 addBatch / executeBatch 로 실행
+    // 청크 내의 행이 하나라도 실패하면 롤백 대상으로 표시하고, 실패한 행을 결과에 담는다.
+    private BatchResult.ChunkResult executeChunk(PreparedStatement pstmt, List<Member> chunk, int chunkIndex) throws SQLException {
+        for (Member member : chunk) {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            pstmt.addBatch();
+        }
+
+        try {
+            int[] resultCnts = executeBatch(pstmt);
+            return new BatchResult.ChunkResult(chunkIndex, chunk.size(), countSaved(resultCnts), false, new ArrayList<>());
+        } catch (BatchUpdateException e) {
+            log.warn("batch chunk failed chunkIndex={}, message={}", chunkIndex, e.getMessage());
+            pstmt.clearBatch();
+
+            // 드라이버가 알려준 행 단위 결과에서 실패한 행을 찾는다.
+            // 드라이버가 첫 실패에서 중단한 경우에는 실패 행을 특정할 수 없으므로 중단 지점의 행을 실패로 본다.
+            int[] resultCnts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+            List<Member> failed = new ArrayList<>();
+            for (int i = 0; i < resultCnts.length; i++) {
+                if (resultCnts[i] == Statement.EXECUTE_FAILED) {
+                    failed.add(chunk.get(i));
+                }
+            }
+            if (failed.isEmpty() && resultCnts.length < chunk.size()) {
+                failed.add(chunk.get(resultCnts.length));
+            }
+            // 롤백 대상 청크이므로 저장된 행은 없음
+            return new BatchResult.ChunkResult(chunkIndex, chunk.size(), 0, true, failed);
+        }
+    }
+
+    private int countSaved(int[] resultCnts) {
+        int saved = 0;
+        for (int resultCnt : resultCnts) {
+            if (resultCnt > 0 || resultCnt == Statement.SUCCESS_NO_INFO) {
+                saved++;
+            }
+        }
+        return saved;
+    }
+
+    private List<List<Member>> chunks(Collection<Member> members, int batchSize) {
+        List<List<Member>> chunks = new ArrayList<>();
+        List<Member> chunk = new ArrayList<>(Math.min(batchSize, members.size()));
+        for (Member member : members) {
+            chunk.add(member);
+            if (chunk.size() == batchSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private void validateBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive batchSize=" + batchSize);
+        }
+    }
+
+    // 소요 시간을 기록하는 메서드
+    private enum Operation {
+        SAVE("save"),
+        UPSERT("upsert"),
+        FIND_BY_ID("findById"),
+        FIND_BY_ID_FOR_UPDATE("findByIdForUpdate"),
+        FIND_BY_ID_VERSIONED("findByIdVersioned"),
+        UPDATE_IF_VERSION("updateIfVersion"),
+        FIND_BY_IDS("findByIds"),
+        UPDATE("update"),
+        DELETE("delete"),
+        DELETE_ALL("deleteAll"),
+        FIND_PAGE("findPage"),
+        FOR_EACH("forEach"),
+        FOR_EACH_ROW("forEachRow"),
+        STREAM_ALL("streamAll"),
+        SAVE_ALL("saveAll"),
+        WITHDRAW("withdraw"),
+        DEPOSIT("deposit"),
+        WITHDRAW_ALL("withdrawAll"),
+        DEPOSIT_ALL("depositAll"),
+        ADD_MONEY_ALL("addMoneyAll"),
+        ADD_CREDIT("addCredit"),
+        UPSERT_ALL("upsertAll");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
     }
 }
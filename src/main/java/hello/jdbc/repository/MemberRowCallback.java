@@ -0,0 +1,8 @@
+package hello.jdbc.repository;
+
+// member 행 단위 콜백 - Member 객체를 만들지 않고 컬럼 값을 그대로 받는다.
+@FunctionalInterface
+public interface MemberRowCallback {
+
+    void processRow(String memberId, int money);
+}
@@ -0,0 +1,65 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// member 행 -> Member 매핑
+// - 조회 SQL 은 COLUMNS 를 사용해 컬럼 순서를 고정하고, 컬럼 값은 이름이 아닌 인덱스로 읽는다.
+//   (이름으로 읽으면 드라이버가 매 행, 매 컬럼마다 컬럼 이름을 찾는다.)
+// - select * 처럼 컬럼 순서를 알 수 없는 ResultSet 은 of(rs) 로 Statement 당 한 번만 인덱스를 찾는다.
+// - Member 를 만들지 않고 값만 필요하면 processRow 로 MemberRowCallback 에 원시 타입 그대로 전달한다.
+// - 낙관적 락 조회(VERSIONED_COLUMNS)는 VERSIONED 로 version 까지 읽는다.
+public final class MemberRowMapper implements RowMapper<Member> {
+
+    // 조회 컬럼 - INSTANCE 의 인덱스(1, 2)와 순서가 같아야 한다.
+    public static final String COLUMNS = "member_id, money";
+
+    public static final String VERSIONED_COLUMNS = "member_id, money, version";
+
+    // 반영 대기 입금(member_credit_journal)을 더한 잔액 - 컬럼 순서는 COLUMNS 와 같으므로 INSTANCE 로 읽는다.
+    public static final String CREDITED_COLUMNS = "member_id, money + coalesce((select sum(j.money) from member_credit_journal j where j.member_id = member.member_id), 0) as money";
+
+    public static final MemberRowMapper INSTANCE = new MemberRowMapper(1, 2, 0);
+    public static final MemberRowMapper VERSIONED = new MemberRowMapper(1, 2, 3);
+
+    private final int memberIdIndex;
+    private final int moneyIndex;
+    // 0 이면 version 을 읽지 않음
+    private final int versionIndex;
+
+    private MemberRowMapper(int memberIdIndex, int moneyIndex, int versionIndex) {
+        this.memberIdIndex = memberIdIndex;
+        this.moneyIndex = moneyIndex;
+        this.versionIndex = versionIndex;
+    }
+
+    // ResultSet 의 컬럼 구성에서 인덱스를 찾음 - 행마다가 아니라 ResultSet 마다 한 번 호출한다.
+    public static MemberRowMapper of(ResultSet rs) throws SQLException {
+        int memberIdIndex = rs.findColumn("member_id");
+        int moneyIndex = rs.findColumn("money");
+        if (memberIdIndex == INSTANCE.memberIdIndex && moneyIndex == INSTANCE.moneyIndex) {
+            return INSTANCE;
+        }
+        return new MemberRowMapper(memberIdIndex, moneyIndex, 0);
+    }
+
+    @Override
+    public Member mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return mapRow(rs);
+    }
+
+    public Member mapRow(ResultSet rs) throws SQLException {
+        if (versionIndex == 0) {
+            return new Member(rs.getString(memberIdIndex), rs.getInt(moneyIndex));
+        }
+        return new Member(rs.getString(memberIdIndex), rs.getInt(moneyIndex), rs.getInt(versionIndex));
+    }
+
+    // 현재 행의 값을 Member 없이 전달 - money 는 박싱하지 않는다.
+    public void processRow(ResultSet rs, MemberRowCallback callback) throws SQLException {
+        callback.processRow(rs.getString(memberIdIndex), rs.getInt(moneyIndex));
+    }
+}
@@ -0,0 +1,27 @@
+package hello.jdbc.repository;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+// 낙관적 락 충돌 - 조회한 뒤 다른 트랜잭션이 먼저 변경하여 version 이 달라진 경우 (또는 회원이 삭제된 경우)
+// 트랜잭션을 처음(조회)부터 다시 실행하면 성공할 수 있다.
+public class MemberVersionConflictException extends OptimisticLockingFailureException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String memberId;
+    private final int expectedVersion;
+
+    public MemberVersionConflictException(String memberId, int expectedVersion) {
+        super("member version conflict memberId=" + memberId + ", expectedVersion=" + expectedVersion);
+        this.memberId = memberId;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+}
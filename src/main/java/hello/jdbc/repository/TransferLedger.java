@@ -0,0 +1,296 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 이체 원장 - 추가만 하는(append-only) journal 과 주기적인 잔액 스냅샷
+// - record() 는 이체 1건을 차변(-), 대변(+) 두 행으로 기록한다. 트랜잭션이 진행중이면 바로 insert 하지 않고 모아두었다가
+//   커밋 직전(beforeCommit)에 같은 트랜잭션의 Connection 으로 배치 1회로 insert 한다. (트랜잭션 안의 이체가 여러 건이어도 SQL 1회)
+// - snapshot() 은 그 시점의 member 잔액과 마지막 journal id 를 스냅샷 테이블에 복사한다. (INSERT ... SELECT 1회)
+// - 과거 시점의 잔액은 그 시점 이전의 가장 최근 스냅샷 + 스냅샷 이후 journal 합계로 계산하므로, 전체 이력을 읽지 않는다.
+// - journal id 는 insert 시점에 정해지므로, insert 후 커밋 전인 트랜잭션이 있으면 스냅샷이 그 행을 놓칠 수 있다.
+//   insert ~ 커밋 구간은 읽기 락, 스냅샷은 쓰기 락으로 서로 배제한다. (하나의 JVM 안에서만 유효)
+@Slf4j
+public class TransferLedger implements AutoCloseable {
+
+    public static final String JOURNAL_DDL = "create table if not exists member_ledger (" +
+            " entry_id bigint auto_increment primary key," +
+            " member_id varchar(10) not null," +
+            " counterparty_id varchar(10) not null," +
+            " amount bigint not null," +
+            " created_at timestamp default current_timestamp not null)";
+
+    public static final String JOURNAL_INDEX_DDL = "create index if not exists member_ledger_member_idx on member_ledger (member_id, entry_id)";
+
+    public static final String SNAPSHOT_DDL = "create table if not exists member_ledger_snapshot (" +
+            " snapshot_id bigint not null," +
+            " member_id varchar(10) not null," +
+            " balance bigint not null," +
+            " last_entry_id bigint not null," +
+            " taken_at timestamp not null," +
+            " primary key (member_id, snapshot_id))";
+
+    private final DataSource dataSource;
+
+    // journal insert ~ 커밋 구간 (읽기 락) 과 스냅샷 (쓰기 락) 의 배제
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private ScheduledExecutorService snapshotScheduler;
+
+    // 쓰기 지연 입금(CreditBuffer) 사용 여부 - 사용하면 스냅샷 잔액에 member_credit_journal 의 반영 대기 입금을 포함한다.
+    // (반영 대기 입금의 원장 기록은 이미 있으므로, member.money 만 복사하면 스냅샷 이후 그 입금이 잔액에서 빠진다.)
+    private volatile boolean creditJournal;
+
+    // dataSource 는 이체 트랜잭션과 같은 DataSource 여야 같은 트랜잭션으로 기록된다.
+    public TransferLedger(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void createTables() throws SQLException {
+        execute(JOURNAL_DDL);
+        execute(JOURNAL_INDEX_DDL);
+        execute(SNAPSHOT_DDL);
+    }
+
+    public void setCreditJournal(boolean creditJournal) {
+        this.creditJournal = creditJournal;
+    }
+
+    // 주기적인 스냅샷 시작
+    public synchronized void startSnapshots(long interval, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("snapshots already started");
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TransferLedger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, unit);
+    }
+
+    // 이체 기록 - 트랜잭션이 진행중이면 커밋 직전에 모아서 insert, 아니면 바로 insert
+    public void record(String fromId, String toId, int money) throws SQLException {
+        List<Entry> entries = new ArrayList<>(2);
+        entries.add(new Entry(fromId, toId, -money));
+        entries.add(new Entry(toId, fromId, money));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            snapshotLock.readLock().lock();
+            try {
+                insert(entries);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            return;
+        }
+        pendingEntries().addAll(entries);
+    }
+
+    // 스냅샷 - 모든 member 의 현재 잔액과 마지막 journal id 를 기록, 반환값은 snapshot_id
+    public long snapshot() throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        snapshotLock.writeLock().lock();
+        try {
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement("select coalesce(max(snapshot_id), 0) + 1, (select coalesce(max(entry_id), 0) from member_ledger) from member_ledger_snapshot");
+            rs = pstmt.executeQuery();
+            rs.next();
+            long snapshotId = rs.getLong(1);
+            long lastEntryId = rs.getLong(2);
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            rs = null;
+
+            pstmt = conn.prepareStatement("insert into member_ledger_snapshot (snapshot_id, member_id, balance, last_entry_id, taken_at)" +
+                    " select ?, " + (creditJournal ? MemberRowMapper.CREDITED_COLUMNS : MemberRowMapper.COLUMNS) + ", ?, current_timestamp from member");
+            pstmt.setLong(1, snapshotId);
+            pstmt.setLong(2, lastEntryId);
+            int resultCnt = pstmt.executeUpdate();
+            log.info("ledger snapshot snapshotId={}, lastEntryId={}, members={}", snapshotId, lastEntryId, resultCnt);
+            return snapshotId;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            snapshotLock.writeLock().unlock();
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    // 현재 잔액 - 가장 최근 스냅샷 + 이후 journal
+    public long balance(String memberId) throws SQLException {
+        return balanceAt(memberId, null);
+    }
+
+    // 지정한 시각의 잔액 - 그 시각 이전의 가장 최근 스냅샷 + 스냅샷 이후 그 시각까지의 journal
+    // 그 시각 이전의 스냅샷이 없으면 NoSuchElementException
+    public long balanceAt(String memberId, Timestamp at) throws SQLException {
+        String sql = "select s.balance + coalesce((select sum(l.amount) from member_ledger l" +
+                "  where l.member_id = s.member_id and l.entry_id > s.last_entry_id" + (at == null ? "" : " and l.created_at <= ?") + "), 0)" +
+                " from member_ledger_snapshot s" +
+                " where s.member_id = ?" + (at == null ? "" : " and s.taken_at <= ?") +
+                " order by s.snapshot_id desc limit 1";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            int index = 1;
+            if (at != null) {
+                pstmt.setTimestamp(index++, at);
+            }
+            pstmt.setString(index++, memberId);
+            if (at != null) {
+                pstmt.setTimestamp(index, at);
+            }
+            rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new NoSuchElementException("ledger snapshot not found memberId=" + memberId + ", at=" + at);
+            }
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    // 스냅샷 중지 (기록은 계속 가능)
+    @Override
+    public synchronized void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            snapshotScheduler = null;
+        }
+    }
+
+    // 현재 트랜잭션에 모아둔 기록 - 처음 호출될 때 커밋 직전 insert, 종료 후 정리를 등록
+    @SuppressWarnings("unchecked")
+    private List<Entry> pendingEntries() {
+        List<Entry> entries = (List<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (entries != null) {
+            return entries;
+        }
+
+        List<Entry> newEntries = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, newEntries);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                snapshotLock.readLock().lock();
+                locked = true;
+                try {
+                    insert(newEntries);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TransferLedger.this);
+                if (locked) {
+                    snapshotLock.readLock().unlock();
+                }
+            }
+        });
+        return newEntries;
+    }
+
+    private void insert(List<Entry> entries) throws SQLException {
+        String sql = "insert into member_ledger (member_id, counterparty_id, amount) values ( ?, ?, ? )";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            for (Entry entry : entries) {
+                pstmt.setString(1, entry.memberId);
+                pstmt.setString(2, entry.counterpartyId);
+                pstmt.setLong(3, entry.amount);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (SQLException | RuntimeException e) {
+            log.error("ledger snapshot failed", e);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private void close(Connection conn, Statement stmt, ResultSet rs) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(stmt);
+        DataSourceUtils.releaseConnection(conn, dataSource);
+    }
+
+    private static class Entry {
+        private final String memberId;
+        private final String counterpartyId;
+        private final long amount;
+
+        Entry(String memberId, String counterpartyId, long amount) {
+            this.memberId = memberId;
+            this.counterpartyId = counterpartyId;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.SimpleConnectionPool;
+import hello.jdbc.domain.Transfer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// MemberServiceV2 의 비동기 실행 래퍼
+// - 호출한 스레드는 JDBC 왕복을 기다리지 않고 CompletableFuture 를 받는다.
+// - 동시에 실행되는 이체 수를 커넥션 풀 크기 이하로 제한한다. (풀보다 많이 실행해도 커넥션을 기다릴 뿐 처리량은 늘지 않음)
+// - 가상 스레드를 지원하는 JDK 에서는 가상 스레드 실행기를 사용하고, 동시 실행 수는 Semaphore 로 제한한다.
+//   그렇지 않으면 풀 크기만큼의 플랫폼 스레드를 가진 고정 크기 실행기를 사용한다.
+@Slf4j
+public class AsyncMemberService implements AutoCloseable {
+
+    private final MemberServiceV2 memberService;
+    private final int maxConcurrency;
+    private final ExecutorService executor;
+    // 가상 스레드 실행기를 사용하는 경우의 동시 실행 제한 (플랫폼 스레드 실행기는 스레드 수로 제한되므로 null)
+    private final Semaphore permits;
+
+    public AsyncMemberService(MemberServiceV2 memberService, int maxConcurrency, boolean preferVirtualThreads) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive maxConcurrency=" + maxConcurrency);
+        }
+        this.memberService = memberService;
+        this.maxConcurrency = maxConcurrency;
+
+        ExecutorService virtualThreadExecutor = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            this.permits = new Semaphore(maxConcurrency);
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "AsyncMemberService-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+        log.info("AsyncMemberService maxConcurrency={}, virtualThreads={}", maxConcurrency, isVirtualThreads());
+    }
+
+    // DataSource 의 커넥션 풀 크기를 동시 실행 제한으로 사용
+    public static AsyncMemberService forPool(MemberServiceV2 memberService, DataSource dataSource, boolean preferVirtualThreads) throws SQLException {
+        return new AsyncMemberService(memberService, poolSize(dataSource), preferVirtualThreads);
+    }
+
+    // SimpleConnectionPool(DBConnectionUtil) 의 최대 크기를 동시 실행 제한으로 사용
+    public static AsyncMemberService forPool(MemberServiceV2 memberService, SimpleConnectionPool pool, boolean preferVirtualThreads) {
+        return new AsyncMemberService(memberService, pool.getMaxSize(), preferVirtualThreads);
+    }
+
+    // HikariCP 의 최대 풀 크기 - ReadWriteRoutingDataSource, DelegatingDataSource 등으로 감싼 경우에도 unwrap 으로 찾는다.
+    // 풀 크기를 알 수 없는 DataSource 는 CPU 수를 사용하므로, 풀 크기에 맞추려면 maxConcurrency 를 직접 지정한다.
+    static int poolSize(DataSource dataSource) throws SQLException {
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        log.warn("pool size unknown, using availableProcessors={} dataSource={}", processors, dataSource.getClass().getName());
+        return processors;
+    }
+
+    public CompletableFuture<Void> accountTransfer(String fromId, String toId, Integer money) {
+        return CompletableFuture.runAsync(() -> withPermit(() -> memberService.accountTransfer(fromId, toId, money)), executor);
+    }
+
+    // 여러 건의 이체를 동시에 실행하고, 모두 끝나면 실패한 이체의 (입력 순서 index -> 예외) 로 완료
+    public CompletableFuture<Map<Integer, RuntimeException>> transferAll(List<Transfer> transfers) {
+        Map<Integer, RuntimeException> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            int index = i;
+            Transfer transfer = transfers.get(i);
+            futures.add(accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney())
+                    .exceptionally(e -> {
+                        failures.put(index, unwrap(e));
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> failures);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    // 종료 - 실행중인 이체가 끝날 때까지 대기
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("AsyncMemberService did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void withPermit(Runnable task) {
+        if (permits == null) {
+            task.run();
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for transfer permit", e);
+        }
+        try {
+            task.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private RuntimeException unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() (JDK 21+) - 빌드는 Java 11 기준이므로 리플렉션으로 호출
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("virtual threads are not available, use platform threads cause={}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Transfer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// 동시에 들어온 계좌이체를 모아서 하나의 트랜잭션으로 처리하는 실행기 (group commit)
+// - 첫 이체가 들어온 뒤 window 동안, 또는 maxBatchSize 건이 모일 때까지 기다렸다가 MemberServiceV2.accountTransferGroup 으로 실행
+// - 이체마다 CompletableFuture 로 결과를 돌려준다. (실패하면 accountTransfer 와 같은 IllegalStateException)
+// - 그룹 실행은 전용 스레드 1개에서 순서대로 처리하며, 결과 완료도 이 스레드에서 이루어진다.
+@Slf4j
+public class GroupCommitExecutor implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_WINDOW_MICROS = 2_000;
+
+    private final MemberServiceV2 memberService;
+    private final int maxBatchSize;
+    private final long windowNanos;
+
+    private final BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder transferCount = new LongAdder();
+
+    public GroupCommitExecutor(MemberServiceV2 memberService) {
+        this(memberService, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    public GroupCommitExecutor(MemberServiceV2 memberService, int maxBatchSize, long window, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive maxBatchSize=" + maxBatchSize);
+        }
+        this.memberService = memberService;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = unit.toNanos(window);
+        this.worker = new Thread(this::run, "GroupCommitExecutor");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // 이체 요청 - 그룹 트랜잭션이 커밋되면 완료
+    public CompletableFuture<Void> submit(Transfer transfer) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("GroupCommitExecutor is closed"));
+        }
+        PendingTransfer pending = new PendingTransfer(transfer);
+        queue.add(pending);
+        // running 확인과 add 사이에 close() 가 끝났으면 (작업 스레드 종료, 큐 정리 완료) 아무도 처리하지 않는다.
+        // 큐에서 직접 꺼내는 데 성공하면 실패로 완료하고, 실패하면 작업 스레드나 close() 가 이미 가져가서 완료한다.
+        if (!running && queue.remove(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException("GroupCommitExecutor is closed"));
+        }
+        return pending.future;
+    }
+
+    public long getGroupCount() {
+        return groupCount.sum();
+    }
+
+    public long getTransferCount() {
+        return transferCount.sum();
+    }
+
+    // 그룹당 평균 이체 건수
+    public double getAverageGroupSize() {
+        long groups = groupCount.sum();
+        return groups == 0 ? 0.0 : (double) transferCount.sum() / groups;
+    }
+
+    // 종료 - 이미 접수된 이체는 모두 처리한 뒤 종료
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 종료 직전에 접수되어 처리되지 못한 이체
+        PendingTransfer pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("GroupCommitExecutor is closed"));
+        }
+    }
+
+    private void run() {
+        List<PendingTransfer> group = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+                execute(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                group.forEach(pending -> pending.future.completeExceptionally(new IllegalStateException("GroupCommitExecutor interrupted", e)));
+                return;
+            } catch (RuntimeException e) {
+                log.error("group commit error", e);
+                group.forEach(pending -> pending.future.completeExceptionally(new IllegalStateException(e)));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    // 이미 쌓여 있는 이체는 바로 가져오고, 부족하면 window 가 끝날 때까지 기다림
+    private void collect(List<PendingTransfer> group) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        queue.drainTo(group, maxBatchSize - group.size());
+        while (group.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+            queue.drainTo(group, maxBatchSize - group.size());
+        }
+    }
+
+    private void execute(List<PendingTransfer> group) {
+        List<Transfer> transfers = new ArrayList<>(group.size());
+        group.forEach(pending -> transfers.add(pending.transfer));
+
+        Map<Integer, RuntimeException> failures = memberService.accountTransferGroup(transfers);
+        groupCount.increment();
+        transferCount.add(group.size());
+        log.debug("group commit size={}, failures={}", group.size(), failures.size());
+
+        for (int i = 0; i < group.size(); i++) {
+            RuntimeException failure = failures.get(i);
+            if (failure == null) {
+                group.get(i).future.complete(null);
+            } else {
+                group.get(i).future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static class PendingTransfer {
+        private final Transfer transfer;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingTransfer(Transfer transfer) {
+            this.transfer = transfer;
+        }
+    }
+}
@@ -1,95 +1,610 @@
 package hello.jdbc.service;
 
-import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.lock.StripedLockManager;
+import hello.jdbc.metrics.LatencyRecorder;
+import hello.jdbc.metrics.LatencyRegistry;
+import hello.jdbc.metrics.TimedTransactionManager;
+import hello.jdbc.repository.CreditBuffer;
 import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.repository.TransferLedger;
+import hello.jdbc.shard.ShardTransactionCoordinator;
+import hello.jdbc.shard.ShardedMemberRepository;
 import lombok.extern.slf4j.Slf4j;
+import hello.jdbc.audit.AuditEventType;
+import hello.jdbc.audit.AuditEventWriter;
+import hello.jdbc.domain.Member;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
-// Transaction 처리를 위해 Service 계층에서 Connection 을 획득하고, Repository 에 제공 후, Connection 을 반환하는 형태로 구성
+// 트랜잭션 매니저가 Connection 을 획득해서 현재 스레드에 보관하고, Repository 는 보관된 Connection 을 꺼내서 사용하는 형태로 구성
+// 트랜잭션 시작, 커밋, 롤백, Connection 반환은 TransactionTemplate 이 처리하므로, 서비스 계층에는 업무 로직만 남는다.
 @Slf4j
 public class MemberServiceV2 {
 
-    // DB 연결 및 SQL 처리
-    private final DataSource dataSource;
+    // 소요 시간 기록 이름 접두어 (예: member.service.accountTransfer)
+    public static final String METRIC_PREFIX = "member.service.";
+
+    // 기본 재시도 정책 - 최대 5회, 10ms 부터 200ms 까지 지수 백오프, 전체 2초 이내
+    public static final RetryPolicy DEFAULT_RETRY_POLICY = new RetryPolicy(5, 10, 200, 2000);
+
+    private final PlatformTransactionManager transactionManager;
     private final MemberRepositoryV2 memberRepository;
+    // SQLException 을 DB 에러 코드 기준으로 분류 (교착 상태, 락 대기 시간 초과 -> PessimisticLockingFailureException)
+    private final SQLExceptionTranslator exTranslator;
+
+    // 계좌별 JVM 락 (설정하지 않으면 DB 락만 사용)
+    private StripedLockManager lockManager;
+
+    // 입금이 몰리는 계좌의 쓰기 지연 버퍼 (설정하지 않으면 모든 입금을 바로 반영)
+    private CreditBuffer creditBuffer;
+
+    // 이체 원장 (설정하지 않으면 기록하지 않음)
+    private TransferLedger ledger;
+
+    // 감사 이벤트 (설정하지 않으면 기록하지 않음)
+    private AuditEventWriter auditWriter;
+
+    // 샤딩 (설정하지 않으면 memberRepository 하나에서 실행)
+    private ShardTransactionCoordinator shardCoordinator;
+    private List<TransactionTemplate> shardTxTemplates;
+
+    // 갱신 전에 두 계좌의 행 락을 select ... for update 로 먼저 획득할지 여부
+    // 기본은 사용하지 않음 - 상대값 갱신 2회를 memberId 순서로 실행하는 것만으로 락 획득 순서가 고정된다.
+    private boolean orderedLocking;
+    // 낙관적 락 사용 여부 - 행 락 없이 조회하고 version 비교로 갱신
+    private boolean optimisticLocking;
+    // 교착 상태, 락 대기 시간 초과, 낙관적 락 충돌 시 재시도 정책
+    private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
+    private final LongAdder retryCount = new LongAdder();
+
+    // 트랜잭션 시작 ~ 커밋(롤백) 까지의 반복 코드를 처리
+    private TransactionTemplate txTemplate;
+
+    // 소요 시간 기록 - 이체 전체 (트랜잭션 시작, 커밋, 롤백 구간은 TimedTransactionManager 가 기록)
+    private LatencyRegistry latencyRegistry;
+    private LatencyRecorder transferRecorder;
+    private LatencyRecorder transferGroupRecorder;
 
 
     public MemberServiceV2(DataSource dataSource, MemberRepositoryV2 memberRepository) {
-        this.dataSource = dataSource;
+        this(new DataSourceTransactionManager(dataSource), memberRepository);
+    }
+
+    public MemberServiceV2(PlatformTransactionManager transactionManager, MemberRepositoryV2 memberRepository) {
+        this.transactionManager = transactionManager;
         this.memberRepository = memberRepository;
+        this.exTranslator = transactionManager instanceof DataSourceTransactionManager
+                ? new SQLErrorCodeSQLExceptionTranslator(((DataSourceTransactionManager) transactionManager).getDataSource())
+                : new SQLErrorCodeSQLExceptionTranslator();
+        setLatencyRegistry(LatencyRegistry.NOOP);
     }
 
-    // 계좌이체 메서드
-    public void accountTransfer(String fromId, String toId, Integer money) throws SQLException {
+    public void setOrderedLocking(boolean orderedLocking) {
+        this.orderedLocking = orderedLocking;
+    }
+
+    // 낙관적 락 - 두 계좌를 행 락 없이 version 과 함께 조회하고, 조회한 version 일 때만 갱신 (compare-and-set)
+    // 그 사이에 다른 트랜잭션이 갱신했으면 충돌로 보고 재시도 정책에 따라 트랜잭션 전체를 다시 실행한다.
+    // 충돌이 드문 경우, 조회 구간 동안 행 락을 잡지 않으므로 대기가 줄어든다.
+    // Repository 의 versioning 이 켜져 있어야 다른 방식의 갱신과도 충돌이 감지된다.
+    public void setOptimisticLocking(boolean optimisticLocking) {
+        this.optimisticLocking = optimisticLocking;
+    }
 
-        // Connection 획득
-        Connection conn = dataSource.getConnection();
+    // Connection 을 획득하기 전에 두 계좌의 JVM 락을 먼저 획득
+    // 같은 계좌로 몰리는 이체는 커넥션을 붙잡지 않고 JVM 안에서 대기한다.
+    public void setLockManager(StripedLockManager lockManager) {
+        this.lockManager = lockManager;
+    }
 
+    // 버퍼 대상 계좌로의 입금은 member 행을 갱신하지 않고 CreditBuffer 의 journal 에 기록
+    // 버퍼 대상 계좌는 행 락(select ... for update), JVM 락 대상에서도 제외한다.
+    // journal 기록은 계좌 존재 여부를 확인하지 않으므로, 설정 시점에 버퍼 대상 계좌가 모두 있는지 확인한다.
+    public void setCreditBuffer(CreditBuffer creditBuffer) {
         try {
+            creditBuffer.checkAccounts();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        this.creditBuffer = creditBuffer;
+        linkLedgerCreditJournal();
+    }
 
-            // 트랜잭션 시작
-            conn.setAutoCommit(false);
+    // 성공한 이체를 원장에 기록 - 이체와 같은 트랜잭션에서, 커밋 직전에 모아서 insert 된다.
+    // 원장은 하나의 DataSource 에 기록하므로 샤딩(setShardCoordinator)과 함께 사용할 수 없다.
+    // (샤드 트랜잭션 밖의 Connection 으로 기록되어, 샤드 커밋이 실패해도 원장 행이 남는다.)
+    public void setLedger(TransferLedger ledger) {
+        if (ledger != null && shardCoordinator != null) {
+            throw new IllegalStateException("ledger is not supported with shard coordinator");
+        }
+        this.ledger = ledger;
+        linkLedgerCreditJournal();
+    }
 
-            log.info("업무 로직 트랜잭션 시작 ----------------------------------------------------------------------------------------------------");
+    // 버퍼 대상 계좌의 반영 대기 입금도 원장 스냅샷 잔액에 포함
+    private void linkLedgerCreditJournal() {
+        if (ledger != null && creditBuffer != null) {
+            ledger.setCreditJournal(true);
+        }
+    }
 
-            // 업무 처리
-            bizLogic(conn, fromId, toId, money);
+    // 이체 시도, 성공, 재시도, 실패 이벤트를 비동기로 기록 - 이체 스레드는 DB insert 를 기다리지 않는다.
+    public void setAuditWriter(AuditEventWriter auditWriter) {
+        this.auditWriter = auditWriter;
+    }
 
-            log.info("업무 로직 트랜잭션 종료 ----------------------------------------------------------------------------------------------------");
+    // 계좌가 속한 샤드에서 이체 실행
+    // 두 계좌가 같은 샤드이면 해당 샤드의 트랜잭션 하나로, 다른 샤드이면 2단계 커밋으로 처리한다.
+    // CreditBuffer 는 샤드를 구분하지 않으므로 함께 사용하지 않으며, accountTransferGroup 은 이체를 하나씩 실행한다.
+    public void setShardCoordinator(ShardTransactionCoordinator shardCoordinator) {
+        if (shardCoordinator != null && ledger != null) {
+            throw new IllegalStateException("shard coordinator is not supported with ledger");
+        }
+        this.shardCoordinator = shardCoordinator;
+        this.shardTxTemplates = shardTxTemplates();
+    }
 
-            // 트랜잭션 정상 종료 - Commit
-            conn.commit();
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
 
-        } catch (Exception e) {
+    // 락 충돌로 재시도한 횟수
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
 
-            // 트랜잭션 비정상 종료 - Rollback
-            conn.rollback();
+    public void setLatencyRegistry(LatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+        this.transferRecorder = latencyRegistry.recorder(METRIC_PREFIX + "accountTransfer");
+        this.transferGroupRecorder = latencyRegistry.recorder(METRIC_PREFIX + "accountTransferGroup");
+        this.txTemplate = new TransactionTemplate(new TimedTransactionManager(transactionManager, latencyRegistry, METRIC_PREFIX));
+        this.shardTxTemplates = shardTxTemplates();
+    }
+
+    private List<TransactionTemplate> shardTxTemplates() {
+        List<TransactionTemplate> templates = new ArrayList<>();
+        if (shardCoordinator != null) {
+            for (int shard = 0; shard < shardCoordinator.getShardedRepository().getShardCount(); shard++) {
+                templates.add(new TransactionTemplate(new TimedTransactionManager(shardCoordinator.getTransactionManager(shard), latencyRegistry, METRIC_PREFIX)));
+            }
+        }
+        return templates;
+    }
+
+    // 계좌이체 메서드
+    // 교착 상태, 락 대기 시간 초과, 낙관적 락 충돌로 실패하면 재시도 정책에 따라 트랜잭션 전체를 다시 실행한다.
+    // 그 외의 예외, 또는 재시도 정책을 넘은 경우에는 롤백 후 IllegalStateException 으로 감싸서 던진다.
+    // JVM 락은 시도마다 획득하고 해제한다. 재시도 대기(backoff) 중에는 락을 잡고 있지 않으므로 같은 stripe 의 다른 이체가 먼저 실행될 수 있고,
+    // 재시도 시간 예산은 처음 락을 획득한 시점부터 계산한다. (JVM 락 대기 시간은 예산에 포함되지 않음)
+    public void accountTransfer(String fromId, String toId, Integer money) {
+
+        long startedAt = System.nanoTime();
+        audit(AuditEventType.TRANSFER_ATTEMPTED, fromId, toId, money, null);
+
+        try {
+            long retryStartedAt = 0;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    StripedLockManager.Locks locks = lockManager == null ? null : lockManager.lock(lockTargets(fromId, toId));
+                    try {
+                        if (attempt == 1) {
+                            retryStartedAt = System.nanoTime();
+                        }
+                        transfer(fromId, toId, money);
+                    } finally {
+                        if (locks != null) {
+                            locks.close();
+                        }
+                    }
+                    audit(AuditEventType.TRANSFER_SUCCEEDED, fromId, toId, money, null);
+                    return;
+                } catch (RuntimeException e) {
+                    RuntimeException cause = applicationException(e);
+                    if (!(cause instanceof ConcurrencyFailureException) || !retryPolicy.canRetry(attempt, retryStartedAt)) {
+                        throw cause;
+                    }
+                    retryCount.increment();
+                    audit(AuditEventType.TRANSFER_RETRIED, fromId, toId, money, cause.getMessage());
+                    long backoffMillis = retryPolicy.backoffMillis(attempt);
+                    log.warn("락 충돌로 이체 재시도 attempt={}, backoffMillis={}, cause={}", attempt, backoffMillis, cause.getMessage());
+                    backoff(backoffMillis, cause);
+                }
+            }
+        } catch (RuntimeException e) {
             log.error("트랜잭션 처리중 예외 발생", e);
+            audit(AuditEventType.TRANSFER_FAILED, fromId, toId, money, e.getMessage());
             throw new IllegalStateException(e);
+        } finally {
+            transferRecorder.recordSince(startedAt);
+        }
+    }
+
+    // 여러 건의 계좌이체를 하나의 트랜잭션(커밋 1회)으로 처리 - group commit
+    // 이체마다 트랜잭션 시작, 커밋, AutoCommit 원복을 반복하지 않고, 차감과 증가를 각각 배치 1회로 실행한다.
+    // 반환값은 실패한 이체의 (입력 순서 index -> 예외). 비어 있으면 모두 성공
+    // 배치 실행 중 SQLException(락 충돌 등)이 발생하면 트랜잭션 전체를 롤백하고, 이체를 하나씩 accountTransfer 로 다시 실행한다.
+    public Map<Integer, RuntimeException> accountTransferGroup(List<Transfer> transfers) {
+
+        long startedAt = System.nanoTime();
+
+        Map<Integer, RuntimeException> failures = new HashMap<>();
+        if (shardCoordinator != null) {
+            try {
+                for (int i = 0; i < transfers.size(); i++) {
+                    Transfer transfer = transfers.get(i);
+                    try {
+                        accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+                    } catch (RuntimeException e) {
+                        failures.put(i, e);
+                    }
+                }
+                return failures;
+            } finally {
+                transferGroupRecorder.recordSince(startedAt);
+            }
+        }
+
+        List<Integer> valid = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            try {
+                validation(transfers.get(i).getToId());
+                valid.add(i);
+            } catch (RuntimeException e) {
+                Transfer transfer = transfers.get(i);
+                audit(AuditEventType.VALIDATION_FAILED, transfer.getFromId(), transfer.getToId(), transfer.getMoney(), e.getMessage());
+                failures.put(i, new IllegalStateException(e));
+            }
+        }
 
+        try {
+            // 배치에 포함된 모든 계좌의 JVM 락을 획득 - 같은 JVM 의 개별 이체와 행 락 순서가 엇갈리지 않음
+            // (개별 이체로 다시 실행하기 전에 해제)
+            StripedLockManager.Locks locks = lockManager == null || valid.isEmpty() ? null : lockManager.lock(groupLockTargets(transfers, valid));
+            Map<Integer, RuntimeException> groupFailures;
+            try {
+                groupFailures = txTemplate.execute(status -> {
+                    try {
+                        return bizLogicGroup(status, transfers, valid);
+                    } catch (SQLException e) {
+                        DataAccessException ex = exTranslator.translate("accountTransferGroup", null, e);
+                        throw ex != null ? ex : new IllegalStateException(e);
+                    }
+                });
+            } finally {
+                if (locks != null) {
+                    locks.close();
+                }
+            }
+            failures.putAll(groupFailures);
+            for (Integer index : valid) {
+                Transfer transfer = transfers.get(index);
+                RuntimeException failure = failures.get(index);
+                audit(failure == null ? AuditEventType.TRANSFER_SUCCEEDED : AuditEventType.TRANSFER_FAILED,
+                        transfer.getFromId(), transfer.getToId(), transfer.getMoney(), failure == null ? null : failure.getMessage());
+            }
+        } catch (RuntimeException e) {
+            log.warn("group commit 실패, 개별 이체로 재실행 size={}, cause={}", valid.size(), e.getMessage());
+            for (Integer index : valid) {
+                Transfer transfer = transfers.get(index);
+                try {
+                    accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+                } catch (RuntimeException ex) {
+                    failures.put(index, ex);
+                }
+            }
         } finally {
+            transferGroupRecorder.recordSince(startedAt);
+        }
+        return failures;
+    }
+
+    // group commit 업무 로직 - 하나의 트랜잭션 안에서 실행
+    // 1) 차감을 보내는 계좌 memberId 순서로 배치 1회로 실행
+    // 2) 차감된 이체의 증가를 받는 계좌 memberId 순서로 배치 1회로 실행, 받는 회원이 없는 이체는 차감한 금액을 되돌림
+    //    버퍼 대상 계좌로의 입금은 개별 이체와 같이 CreditBuffer 의 journal 에 기록
+    // 3) 잔액 부족으로 차감되지 않은 이체는 다른 이체의 입금이 반영된 뒤에 Savepoint 를 두고 하나씩 다시 시도
+    // 각 배치 안에서는 행 락을 memberId 순서로 획득한다. 차감 단계와 증가 단계 사이의 순서까지 고정되지는 않으므로,
+    // 다른 JVM 의 이체와 교착 상태가 생기면 DB 가 감지하고, 트랜잭션 전체를 롤백한 뒤 개별 이체로 다시 실행된다.
+    private Map<Integer, RuntimeException> bizLogicGroup(TransactionStatus status, List<Transfer> transfers, List<Integer> valid) throws SQLException {
+        Map<Integer, RuntimeException> failures = new HashMap<>();
+        if (valid.isEmpty()) {
+            return failures;
+        }
 
-            // Connection 반환
-            releaseConnection(conn);
+        List<Integer> withdrawOrder = sorted(valid, index -> transfers.get(index).getFromId());
+        int[] withdrawCnts = memberRepository.withdrawAll(select(transfers, withdrawOrder));
+        List<Integer> withdrawn = new ArrayList<>();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < withdrawCnts.length; i++) {
+            (withdrawCnts[i] != 0 ? withdrawn : pending).add(withdrawOrder.get(i));
+        }
 
+        List<Integer> deposits = new ArrayList<>(withdrawn.size());
+        for (Integer index : withdrawn) {
+            Transfer transfer = transfers.get(index);
+            if (isBuffered(transfer.getToId())) {
+                creditBuffer.credit(transfer.getToId(), transfer.getMoney());
+            } else {
+                deposits.add(index);
+            }
         }
+
+        if (!deposits.isEmpty()) {
+            List<Integer> depositOrder = sorted(deposits, index -> transfers.get(index).getToId());
+            int[] depositCnts = memberRepository.depositAll(select(transfers, depositOrder));
+            List<Transfer> refunds = new ArrayList<>();
+            for (int i = 0; i < depositCnts.length; i++) {
+                if (depositCnts[i] == 0) {
+                    Transfer transfer = transfers.get(depositOrder.get(i));
+                    failures.put(depositOrder.get(i), new IllegalStateException(new NoSuchElementException("member not found memberId=" + transfer.getToId())));
+                    refunds.add(new Transfer(transfer.getToId(), transfer.getFromId(), transfer.getMoney()));
+                }
+            }
+            if (!refunds.isEmpty()) {
+                // 되돌리는 계좌는 1) 에서 이미 행 락을 획득한 계좌
+                memberRepository.depositAll(refunds);
+            }
+        }
+
+        for (Integer index : pending) {
+            Transfer transfer = transfers.get(index);
+            Object savepoint = status.createSavepoint();
+            try {
+                bizLogic(memberRepository, transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+                status.releaseSavepoint(savepoint);
+            } catch (RuntimeException e) {
+                status.rollbackToSavepoint(savepoint);
+                failures.put(index, new IllegalStateException(e));
+            }
+        }
+
+        for (Integer index : valid) {
+            if (!failures.containsKey(index)) {
+                Transfer transfer = transfers.get(index);
+                recordLedger(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+            }
+        }
+        return failures;
     }
 
-    private void bizLogic(Connection conn, String fromId, String toId, Integer money) throws SQLException {
-        // 송신자 조회
-        Member fromMember = memberRepository.findById(conn, fromId);
+    // memberId 순서로 정렬한 이체 index (같은 memberId 는 입력 순서 유지)
+    private List<Integer> sorted(List<Integer> indexes, Function<Integer, String> memberId) {
+        List<Integer> sorted = new ArrayList<>(indexes);
+        sorted.sort(Comparator.comparing(memberId));
+        return sorted;
+    }
 
-        // 수신자 조회
-        Member toMember = memberRepository.findById(conn, toId);
+    // 배치에 포함된 이체들의 JVM 락 대상 계좌
+    private String[] groupLockTargets(List<Transfer> transfers, List<Integer> valid) {
+        List<String> targets = new ArrayList<>();
+        for (Integer index : valid) {
+            Transfer transfer = transfers.get(index);
+            targets.addAll(Arrays.asList(lockTargets(transfer.getFromId(), transfer.getToId())));
+        }
+        return targets.toArray(new String[0]);
+    }
 
-        // 송신자 차감
-        memberRepository.update(conn, fromMember.getMemberId(), fromMember.getMoney() - money);
+    private List<Transfer> select(List<Transfer> transfers, List<Integer> indexes) {
+        List<Transfer> selected = new ArrayList<>(indexes.size());
+        indexes.forEach(index -> selected.add(transfers.get(index)));
+        return selected;
+    }
 
-        // 오류 케이스를 일부러 만들어놓음
-        validation(toMember);
+    // 트랜잭션 1회 실행 - SQLException 은 에러 코드 기준으로 분류된 DataAccessException 으로 변환
+    private void transfer(String fromId, String toId, Integer money) {
+        if (shardCoordinator == null) {
+            transfer(txTemplate, memberRepository, fromId, toId, money);
+            return;
+        }
 
-        // 수신자 증가
-        memberRepository.update(conn, toMember.getMemberId(), toMember.getMoney() + money);
+        ShardedMemberRepository shardedRepository = shardCoordinator.getShardedRepository();
+        int fromShard = shardedRepository.shardOf(fromId);
+        int toShard = shardedRepository.shardOf(toId);
+        if (fromShard == toShard) {
+            // 같은 샤드 - 해당 샤드의 트랜잭션 하나로 처리
+            transfer(shardTxTemplates.get(fromShard), shardedRepository.getRepository(fromShard), fromId, toId, money);
+            return;
+        }
+
+        // 다른 샤드 - 두 샤드의 트랜잭션을 2단계 커밋
+        try {
+            shardCoordinator.execute(List.of(fromShard, toShard), () -> bizLogicCrossShard(shardedRepository, fromId, toId, money));
+        } catch (SQLException e) {
+            DataAccessException ex = exTranslator.translate("accountTransfer", null, e);
+            throw ex != null ? ex : new IllegalStateException(e);
+        }
     }
 
-    // AutoCommit 자동으로 변경
-    // Connection 반환
-    private void releaseConnection(Connection conn) {
-        if (conn != null) {
+    private void transfer(TransactionTemplate txTemplate, MemberRepositoryV2 memberRepository, String fromId, String toId, Integer money) {
+        txTemplate.executeWithoutResult(status -> {
+            log.info("업무 로직 트랜잭션 시작 ----------------------------------------------------------------------------------------------------");
             try {
-                conn.setAutoCommit(true); // AutoCommit 상태 자동으로 변경
-                conn.close();
-            } catch (Exception e) {
-                log.error("Connection Close 예외 발생", e);
+                // 업무 처리
+                bizLogic(memberRepository, fromId, toId, money);
+                recordLedger(fromId, toId, money);
+            } catch (SQLException e) {
+                DataAccessException ex = exTranslator.translate("accountTransfer", null, e);
+                throw ex != null ? ex : new IllegalStateException(e);
+            }
+            log.info("업무 로직 트랜잭션 종료 ----------------------------------------------------------------------------------------------------");
+        });
+    }
+
+    // 롤백까지 실패한 경우 TransactionSystemException 에 원래 예외가 담겨 있음
+    // (HikariCP 는 락 대기 시간 초과(SQLTimeoutException)가 발생한 Connection 을 폐기하므로, 이어지는 롤백이 실패한다.)
+    private RuntimeException applicationException(RuntimeException e) {
+        if (e instanceof TransactionSystemException) {
+            Throwable applicationException = ((TransactionSystemException) e).getApplicationException();
+            if (applicationException instanceof RuntimeException) {
+                return (RuntimeException) applicationException;
             }
         }
+        return e;
+    }
+
+    private void backoff(long backoffMillis, RuntimeException cause) {
+        try {
+            Thread.sleep(backoffMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    // 조회 후 절대값으로 갱신하는 방식(read-modify-write) 대신, DB 에서 상대값으로 갱신한다.
+    // SQL 2회로 이체가 끝나고, 동시에 같은 계좌로 이체가 일어나도 갱신 유실이 없다.
+    // 두 갱신은 memberId 순서로 실행한다. (받는 계좌의 memberId 가 더 작으면 입금을 먼저 실행)
+    // 행 락은 갱신 시점에 획득되므로, A->B, B->A 이체가 동시에 실행되어도 같은 순서로 락을 기다리고 교착 상태가 생기지 않는다.
+    private void bizLogic(MemberRepositoryV2 memberRepository, String fromId, String toId, Integer money) throws SQLException {
+        if (optimisticLocking) {
+            bizLogicOptimistic(memberRepository, fromId, toId, money);
+            return;
+        }
+
+        // 갱신 전에 행 락을 먼저 획득 (setOrderedLocking 으로 켠 경우만)
+        if (orderedLocking) {
+            lockInOrder(memberRepository, fromId, toId);
+        }
+
+        // 버퍼 대상 계좌로의 입금은 행을 갱신하지 않으므로 항상 차감을 먼저 실행
+        boolean withdrawFirst = isBuffered(toId) || fromId.compareTo(toId) <= 0;
+        if (withdrawFirst) {
+            withdraw(memberRepository, fromId, money);
+        }
+
+        // 오류 케이스를 일부러 만들어놓음
+        validation(toId);
+
+        // 수신자 증가 - 버퍼 대상 계좌는 journal 에 기록
+        if (isBuffered(toId)) {
+            creditBuffer.credit(toId, money);
+        } else if (memberRepository.deposit(toId, money) == 0) {
+            throw new NoSuchElementException("member not found memberId=" + toId);
+        }
+
+        // 송신자 차감 - 잔액이 부족하면 갱신되지 않으므로, 먼저 실행한 입금까지 트랜잭션 롤백
+        if (!withdrawFirst) {
+            withdraw(memberRepository, fromId, money);
+        }
+    }
+
+    // 송신자 차감 - 잔액이 부족하거나 회원이 없으면 갱신되지 않음
+    private void withdraw(MemberRepositoryV2 memberRepository, String fromId, Integer money) throws SQLException {
+        if (memberRepository.withdraw(fromId, money) == 0) {
+            throw new IllegalStateException("잔액 부족 또는 회원 없음 memberId=" + fromId);
+        }
+    }
+
+    // 낙관적 락 이체 - 조회한 잔액으로 계산한 값을 조회한 version 일 때만 반영
+    // 갱신은 memberId 순서로 실행하여, 동시에 갱신 단계에 들어간 트랜잭션끼리 교착 상태가 생기지 않도록 한다.
+    private void bizLogicOptimistic(MemberRepositoryV2 memberRepository, String fromId, String toId, Integer money) throws SQLException {
+        Member fromMember = memberRepository.findByIdVersioned(fromId);
+        if (fromMember.getMoney() < money) {
+            throw new IllegalStateException("잔액 부족 memberId=" + fromId);
+        }
+
+        // 오류 케이스를 일부러 만들어놓음
+        validation(toId);
+
+        // 같은 계좌로의 이체는 잔액 변화 없음
+        if (fromId.equals(toId)) {
+            return;
+        }
+        if (isBuffered(toId)) {
+            memberRepository.updateIfVersion(fromId, fromMember.getMoney() - money, fromMember.getVersion());
+            creditBuffer.credit(toId, money);
+            return;
+        }
+
+        Member toMember = memberRepository.findByIdVersioned(toId);
+        if (fromId.compareTo(toId) < 0) {
+            memberRepository.updateIfVersion(fromId, fromMember.getMoney() - money, fromMember.getVersion());
+            memberRepository.updateIfVersion(toId, toMember.getMoney() + money, toMember.getVersion());
+        } else {
+            memberRepository.updateIfVersion(toId, toMember.getMoney() + money, toMember.getVersion());
+            memberRepository.updateIfVersion(fromId, fromMember.getMoney() - money, fromMember.getVersion());
+        }
+    }
+
+    // 샤드 간 이체 - 샤드 번호 순서로 갱신하여, 두 샤드의 행 락을 항상 같은 순서로 획득
+    // 샤드가 다르면 어느 DB 도 교착 상태를 감지할 수 없으므로, 락 순서가 엇갈리면 락 대기 시간 초과까지 기다리게 된다.
+    private void bizLogicCrossShard(ShardedMemberRepository shardedRepository, String fromId, String toId, Integer money) throws SQLException {
+        boolean withdrawFirst = shardedRepository.shardOf(fromId) < shardedRepository.shardOf(toId);
+        if (withdrawFirst) {
+            withdraw(shardedRepository, fromId, money);
+        }
+
+        // 오류 케이스를 일부러 만들어놓음
+        validation(toId);
+
+        if (shardedRepository.deposit(toId, money) == 0) {
+            throw new NoSuchElementException("member not found memberId=" + toId);
+        }
+        if (!withdrawFirst) {
+            withdraw(shardedRepository, fromId, money);
+        }
+    }
+
+    private void withdraw(ShardedMemberRepository shardedRepository, String fromId, Integer money) throws SQLException {
+        if (shardedRepository.withdraw(fromId, money) == 0) {
+            throw new IllegalStateException("잔액 부족 또는 회원 없음 memberId=" + fromId);
+        }
+    }
+
+    private void audit(AuditEventType type, String fromId, String toId, Integer money, String reason) {
+        if (auditWriter != null) {
+            auditWriter.record(type, fromId, toId, money, reason);
+        }
+    }
+
+    private void recordLedger(String fromId, String toId, Integer money) throws SQLException {
+        if (ledger != null) {
+            ledger.record(fromId, toId, money);
+        }
+    }
+
+    private void lockInOrder(MemberRepositoryV2 memberRepository, String fromId, String toId) throws SQLException {
+        String[] targets = lockTargets(fromId, toId);
+        Arrays.sort(targets);
+        for (String memberId : targets) {
+            memberRepository.findByIdForUpdate(memberId);
+        }
+    }
+
+    // 락 대상 계좌 - 같은 계좌는 한 번만, 버퍼 대상 계좌는 제외
+    private String[] lockTargets(String fromId, String toId) {
+        if (fromId.equals(toId) || isBuffered(toId)) {
+            return new String[]{fromId};
+        }
+        return new String[]{fromId, toId};
+    }
+
+    private boolean isBuffered(String memberId) {
+        return creditBuffer != null && creditBuffer.isBuffered(memberId);
     }
 
-    private void validation(Member member) {
-        if (member.getMemberId().equals("ex")) {
+    private void validation(String memberId) {
+        if (memberId.equals("ex")) {
             throw new IllegalStateException("이체중 예외 발생");
         }
     }
@@ -0,0 +1,51 @@
+package hello.jdbc.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// 재시도 정책 - 최대 시도 횟수, 지수 백오프(+지터), 전체 재시도 예산
+// 대기 시간은 0 ~ min(maxBackoff, initialBackoff * 2^(재시도 순번)) 사이의 임의 값 (full jitter)
+// 충돌한 트랜잭션들이 같은 시점에 다시 충돌하지 않도록 대기 시간을 흩뜨린다.
+public class RetryPolicy {
+
+    // 재시도하지 않음
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    // 첫 시도부터 이 시간이 지나면 더 이상 재시도하지 않음
+    private final long budgetMillis;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long budgetMillis) {
+        if (maxAttempts < 1 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis || budgetMillis < 0) {
+            throw new IllegalArgumentException("invalid retry policy maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                    + ", maxBackoffMillis=" + maxBackoffMillis + ", budgetMillis=" + budgetMillis);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.budgetMillis = budgetMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // attempt 번째 시도(1부터)가 실패한 뒤 재시도할 수 있는지
+    public boolean canRetry(int attempt, long startedAtNanos) {
+        return attempt < maxAttempts && System.nanoTime() - startedAtNanos < budgetMillis * 1_000_000;
+    }
+
+    // attempt 번째 시도(1부터)가 실패한 뒤의 대기 시간
+    public long backoffMillis(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt - 1, 30);
+        ceiling = Math.min(ceiling, maxBackoffMillis);
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis + ", budgetMillis=" + budgetMillis + '}';
+    }
+}
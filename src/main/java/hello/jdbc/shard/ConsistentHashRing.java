@@ -0,0 +1,72 @@
+package hello.jdbc.shard;
+
+import java.util.Arrays;
+
+// 일관된 해싱(consistent hashing) 링 - memberId 를 샤드 번호로 변환
+// - 샤드마다 virtualNodes 개의 점을 링(64bit 해시 공간) 위에 두고, 키의 해시 다음에 오는 첫 점의 샤드를 선택한다.
+// - 샤드를 추가 / 제거해도 해당 샤드의 점 근처 키만 이동하므로, 나머지 키는 원래 샤드에 그대로 남는다.
+// - 링은 생성 후 변경하지 않는다. (정렬된 배열 + 이진 탐색, 락 없이 조회)
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int shardCount;
+    // 점의 해시 (오름차순) 와 해당 점의 샤드 번호
+    private final long[] points;
+    private final int[] shards;
+
+    public ConsistentHashRing(int shardCount) {
+        this(shardCount, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("invalid ring shardCount=" + shardCount + ", virtualNodes=" + virtualNodes);
+        }
+        this.shardCount = shardCount;
+
+        long[][] entries = new long[shardCount * virtualNodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                entries[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.points = new long[entries.length];
+        this.shards = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            shards[i] = (int) entries[i][1];
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // 키가 속한 샤드 번호 (0 ~ shardCount - 1)
+    public int shardOf(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // 마지막 점보다 크면 링의 처음으로
+        return shards[index == points.length ? 0 : index];
+    }
+
+    // FNV-1a 64bit + 비트 섞기(murmur3 fmix64) - 비슷한 키(member1, member2 ...)도 링 위에 고르게 흩어지도록
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
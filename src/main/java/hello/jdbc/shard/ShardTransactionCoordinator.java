@@ -0,0 +1,287 @@
+package hello.jdbc.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+// 여러 샤드에 걸친 작업을 2단계 커밋(two-phase commit)으로 처리
+// 1) 참여 샤드마다 트랜잭션을 시작하고 (샤드 DataSource 별 Connection 이 현재 스레드에 보관됨) 작업을 실행
+// 2) 모든 샤드에서 PREPARE COMMIT - 이 시점 이후에는 DB 가 재시작되어도 커밋할 수 있는 상태(in-doubt)로 남는다.
+// 3) 코디네이터 로그(shard_tx_log)에 커밋 결정을 기록 - 이 기록이 트랜잭션의 커밋 시점
+// 4) 모든 샤드 커밋 후 로그 삭제
+// 2) 까지 실패하면 모든 샤드를 롤백하고, 3) 이후 커밋에 실패한 샤드는 recover() 가 로그를 보고 커밋한다.
+@Slf4j
+public class ShardTransactionCoordinator {
+
+    public static final String LOG_DDL = "create table if not exists shard_tx_log (" +
+            "tx_id varchar(64) primary key, " +
+            "participants varchar(255) not null, " +
+            "created_at timestamp default current_timestamp)";
+
+    private final ShardedMemberRepository shardedRepository;
+    // 코디네이터 로그를 저장하는 DataSource
+    private final DataSource logDataSource;
+    private final List<PlatformTransactionManager> transactionManagers;
+
+    private final LongAdder commitCount = new LongAdder();
+    private final LongAdder rollbackCount = new LongAdder();
+    private final LongAdder inDoubtCount = new LongAdder();
+
+    public ShardTransactionCoordinator(ShardedMemberRepository shardedRepository, DataSource logDataSource) {
+        this.shardedRepository = shardedRepository;
+        this.logDataSource = logDataSource;
+        List<PlatformTransactionManager> transactionManagers = new ArrayList<>();
+        for (int shard = 0; shard < shardedRepository.getShardCount(); shard++) {
+            transactionManagers.add(new DataSourceTransactionManager(shardedRepository.getDataSource(shard)));
+        }
+        this.transactionManagers = List.copyOf(transactionManagers);
+    }
+
+    public ShardedMemberRepository getShardedRepository() {
+        return shardedRepository;
+    }
+
+    // 샤드 하나에서 끝나는 작업은 2단계 커밋 없이 이 트랜잭션 매니저로 처리
+    public PlatformTransactionManager getTransactionManager(int shard) {
+        return transactionManagers.get(shard);
+    }
+
+    public void createLogTable() throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = logDataSource.getConnection();
+            stmt = conn.createStatement();
+            stmt.execute(LOG_DDL);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    // shards 에 속한 샤드 트랜잭션 안에서 work 를 실행하고 2단계 커밋
+    // work 안의 Repository 호출은 각 샤드 DataSource 에 묶인 Connection 을 사용한다.
+    public void execute(Collection<Integer> shards, ShardWork work) throws SQLException {
+        // 항상 같은 순서로 트랜잭션을 시작 (Connection 획득 순서 고정)
+        List<Integer> participants = new ArrayList<>(new TreeSet<>(shards));
+        String txId = "SHARD_TX_" + UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        List<TransactionStatus> statuses = new ArrayList<>(participants.size());
+
+        try {
+            for (Integer shard : participants) {
+                statuses.add(transactionManagers.get(shard).getTransaction(new DefaultTransactionDefinition()));
+            }
+            work.execute();
+            for (Integer shard : participants) {
+                prepare(shard, txId);
+            }
+            writeLog(txId, participants);
+        } catch (SQLException | RuntimeException e) {
+            rollbackAll(participants, statuses);
+            throw e;
+        }
+
+        // 커밋 결정 이후 - 실패한 샤드가 있어도 나머지 샤드는 커밋하고, 실패한 샤드는 recover() 에 맡긴다.
+        // 트랜잭션은 시작한 역순으로 종료해야 트랜잭션 동기화 상태가 올바르게 복원된다.
+        boolean allCommitted = true;
+        for (int i = statuses.size() - 1; i >= 0; i--) {
+            try {
+                transactionManagers.get(participants.get(i)).commit(statuses.get(i));
+            } catch (RuntimeException e) {
+                allCommitted = false;
+                log.error("shard commit failed, left in doubt txId={}, shard={}", txId, participants.get(i), e);
+            }
+        }
+        // 트랜잭션 하나는 커밋 완료 또는 in-doubt 중 하나로만 센다.
+        if (!allCommitted) {
+            inDoubtCount.increment();
+            return;
+        }
+        commitCount.increment();
+        deleteLog(txId);
+    }
+
+    // 시작 시점 복구 - 각 샤드에 남아 있는 in-doubt 트랜잭션을 로그에 따라 커밋 또는 롤백
+    // 진행중인 2단계 커밋의 PREPARE 상태도 in-doubt 로 보이므로, 다른 트랜잭션이 실행되기 전에 호출해야 한다.
+    // 반환값은 처리한 in-doubt 트랜잭션 수
+    public int recover() throws SQLException {
+        Set<String> committed = readLog();
+        int resolved = 0;
+        for (int shard = 0; shard < shardedRepository.getShardCount(); shard++) {
+            for (String txId : inDoubt(shard)) {
+                boolean commit = committed.contains(txId);
+                log.warn("resolve in-doubt transaction txId={}, shard={}, commit={}", txId, shard, commit);
+                executeOn(shardedRepository.getDataSource(shard), (commit ? "commit transaction " : "rollback transaction ") + txId);
+                resolved++;
+            }
+        }
+        for (String txId : committed) {
+            deleteLog(txId);
+        }
+        return resolved;
+    }
+
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    public long getRollbackCount() {
+        return rollbackCount.sum();
+    }
+
+    // 커밋 결정 이후 커밋에 실패한 샤드가 있어서 in-doubt 로 남은 트랜잭션 수 (recover() 대상)
+    public long getInDoubtCount() {
+        return inDoubtCount.sum();
+    }
+
+    private void prepare(int shard, String txId) throws SQLException {
+        DataSource dataSource = shardedRepository.getDataSource(shard);
+        Connection conn = DataSourceUtils.getConnection(dataSource);
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute("prepare commit " + txId);
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+            DataSourceUtils.releaseConnection(conn, dataSource);
+        }
+    }
+
+    private void rollbackAll(List<Integer> participants, List<TransactionStatus> statuses) {
+        rollbackCount.increment();
+        for (int i = statuses.size() - 1; i >= 0; i--) {
+            try {
+                transactionManagers.get(participants.get(i)).rollback(statuses.get(i));
+            } catch (RuntimeException e) {
+                log.error("shard rollback failed shard={}", participants.get(i), e);
+            }
+        }
+    }
+
+    // 로그는 샤드 트랜잭션과 별개의 Connection 으로 즉시 커밋
+    // (logDataSource 가 샤드 DataSource 와 같더라도 트랜잭션에 묶인 Connection 을 쓰지 않도록 DataSourceUtils 를 거치지 않는다.)
+    private void writeLog(String txId, List<Integer> participants) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = logDataSource.getConnection();
+            pstmt = conn.prepareStatement("insert into shard_tx_log (tx_id, participants) values ( ?, ? )");
+            pstmt.setString(1, txId);
+            pstmt.setString(2, participants.toString());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    // 로그 삭제 실패는 무시 - 남은 로그는 다음 recover() 에서 정리
+    private void deleteLog(String txId) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = logDataSource.getConnection();
+            pstmt = conn.prepareStatement("delete from shard_tx_log where tx_id = ?");
+            pstmt.setString(1, txId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("shard_tx_log delete failed txId={}", txId, e);
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private Set<String> readLog() throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = logDataSource.getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select tx_id from shard_tx_log");
+            Set<String> txIds = new HashSet<>();
+            while (rs.next()) {
+                txIds.add(rs.getString(1));
+            }
+            return txIds;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private List<String> inDoubt(int shard) throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = shardedRepository.getDataSource(shard).getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select transaction from information_schema.in_doubt");
+            List<String> txIds = new ArrayList<>();
+            while (rs.next()) {
+                txIds.add(rs.getString(1));
+            }
+            return txIds;
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private void executeOn(DataSource dataSource, String sql) throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            log.error("DB error", e);
+            throw e;
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    // 샤드 트랜잭션 안에서 실행할 작업
+    @FunctionalInterface
+    public interface ShardWork {
+        void execute() throws SQLException;
+    }
+}
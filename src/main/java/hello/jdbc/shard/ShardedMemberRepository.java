@@ -0,0 +1,241 @@
+package hello.jdbc.shard;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberLookup;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.repository.MemberRowCallback;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// member 테이블을 여러 DataSource(샤드)에 나누어 저장하는 형태
+// - 샤드마다 MemberRepositoryV2 를 하나씩 두고, memberId 를 ConsistentHashRing 으로 샤드에 배정한다.
+// - 단건 메서드는 memberId 의 샤드로 바로 보낸다. 트랜잭션이 진행중이면 해당 샤드 DataSource 에 묶인 Connection 을 사용한다.
+// - 다건 조회(findByIds), 전체 조회(forEach, forEachRow)는 샤드별로 나누어 병렬로 실행한 뒤 결과를 합친다.
+//   병렬 조회는 별도 스레드에서 실행되므로 트랜잭션에 참여하지 않는다.
+@Slf4j
+public class ShardedMemberRepository {
+
+    private final ConsistentHashRing ring;
+    private final List<DataSource> dataSources;
+    private final List<MemberRepositoryV2> repositories;
+
+    // 샤드 병렬 조회용 스레드
+    private final ExecutorService fanOutExecutor;
+
+    public ShardedMemberRepository(List<DataSource> dataSources) {
+        this(dataSources, new ConsistentHashRing(dataSources.size()));
+    }
+
+    public ShardedMemberRepository(List<DataSource> dataSources, ConsistentHashRing ring) {
+        if (dataSources.size() != ring.getShardCount()) {
+            throw new IllegalArgumentException("shard count mismatch dataSources=" + dataSources.size() + ", ring=" + ring.getShardCount());
+        }
+        this.ring = ring;
+        this.dataSources = List.copyOf(dataSources);
+        List<MemberRepositoryV2> repositories = new ArrayList<>(dataSources.size());
+        dataSources.forEach(dataSource -> repositories.add(new MemberRepositoryV2(dataSource)));
+        this.repositories = List.copyOf(repositories);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.fanOutExecutor = Executors.newFixedThreadPool(dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "ShardedMemberRepository-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return repositories.size();
+    }
+
+    public int shardOf(String memberId) {
+        return ring.shardOf(memberId);
+    }
+
+    public DataSource getDataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    public MemberRepositoryV2 getRepository(int shard) {
+        return repositories.get(shard);
+    }
+
+    // memberId 가 속한 샤드의 Repository
+    public MemberRepositoryV2 repository(String memberId) {
+        return repositories.get(shardOf(memberId));
+    }
+
+    public Member save(Member member) throws SQLException {
+        return repository(member.getMemberId()).save(member);
+    }
+
+    public Member upsert(Member member) throws SQLException {
+        return repository(member.getMemberId()).upsert(member);
+    }
+
+    public Member findById(String memberId) throws SQLException {
+        return repository(memberId).findById(memberId);
+    }
+
+    public void update(String memberId, Integer money) throws SQLException {
+        repository(memberId).update(memberId, money);
+    }
+
+    public void delete(String memberId) throws SQLException {
+        repository(memberId).delete(memberId);
+    }
+
+    public int withdraw(String memberId, Integer money) throws SQLException {
+        return repository(memberId).withdraw(memberId, money);
+    }
+
+    public int deposit(String memberId, Integer money) throws SQLException {
+        return repository(memberId).deposit(memberId, money);
+    }
+
+    // 전체 샤드의 member 삭제
+    public void deleteAll() throws SQLException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (MemberRepositoryV2 repository : repositories) {
+            tasks.add(() -> {
+                repository.deleteAll();
+                return null;
+            });
+        }
+        fanOut(tasks);
+    }
+
+    // 다건 insert 또는 update - 샤드별로 나누어 병렬 실행, 반환값은 반영된 행 수 합계
+    public int upsertAll(Collection<Member> members) throws SQLException {
+        List<List<Member>> byShard = new ArrayList<>();
+        repositories.forEach(repository -> byShard.add(new ArrayList<>()));
+        members.forEach(member -> byShard.get(shardOf(member.getMemberId())).add(member));
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            MemberRepositoryV2 repository = repositories.get(shard);
+            List<Member> shardMembers = byShard.get(shard);
+            if (!shardMembers.isEmpty()) {
+                tasks.add(() -> repository.upsertAll(shardMembers));
+            }
+        }
+        int resultCnt = 0;
+        for (Integer shardResultCnt : fanOut(tasks)) {
+            resultCnt += shardResultCnt;
+        }
+        return resultCnt;
+    }
+
+    // 다건 조회 - memberId 를 샤드별로 나누어 각 샤드의 findByIds 를 병렬 실행
+    public MemberLookup findByIds(Collection<String> memberIds) throws SQLException {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        List<List<String>> byShard = new ArrayList<>();
+        repositories.forEach(repository -> byShard.add(new ArrayList<>()));
+        distinctIds.forEach(memberId -> byShard.get(shardOf(memberId)).add(memberId));
+
+        List<Callable<MemberLookup>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            MemberRepositoryV2 repository = repositories.get(shard);
+            List<String> shardIds = byShard.get(shard);
+            if (!shardIds.isEmpty()) {
+                tasks.add(() -> repository.findByIds(shardIds));
+            }
+        }
+        Map<String, Member> found = new HashMap<>();
+        for (MemberLookup lookup : fanOut(tasks)) {
+            found.putAll(lookup.getMembers());
+        }
+
+        // 요청한 순서로 합침
+        Map<String, Member> members = new LinkedHashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String memberId : distinctIds) {
+            Member member = found.get(memberId);
+            if (member == null) {
+                missingIds.add(memberId);
+            } else {
+                members.put(memberId, member);
+            }
+        }
+        return new MemberLookup(members, missingIds);
+    }
+
+    // 전체 조회 - 샤드별 커서 조회를 병렬로 실행
+    // action 은 여러 스레드에서 동시에 호출되므로 thread-safe 해야 하며, 행의 순서는 보장하지 않는다.
+    public void forEach(Consumer<Member> action) throws SQLException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (MemberRepositoryV2 repository : repositories) {
+            tasks.add(() -> {
+                repository.forEach(action);
+                return null;
+            });
+        }
+        fanOut(tasks);
+    }
+
+    // 전체 조회 - forEach 와 같지만 Member 를 만들지 않음
+    public void forEachRow(MemberRowCallback callback) throws SQLException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (MemberRepositoryV2 repository : repositories) {
+            tasks.add(() -> {
+                repository.forEachRow(callback);
+                return null;
+            });
+        }
+        fanOut(tasks);
+    }
+
+    public void close() {
+        fanOutExecutor.shutdown();
+    }
+
+    // 작업을 샤드 스레드에서 병렬 실행하고 모두 끝날 때까지 대기
+    // 작업이 하나뿐이어도 샤드 스레드에서 실행한다. (호출한 쪽 스레드에서 실행하면 그 트랜잭션에 참여하게 되어,
+    // id 가 몇 개의 샤드로 나뉘는지에 따라 트랜잭션 참여 여부가 달라짐 - 병렬 조회는 항상 트랜잭션 밖)
+    // 실패한 작업이 있으면 나머지 작업이 끝난 뒤 첫 번째 예외를 던진다.
+    private <T> List<T> fanOut(List<Callable<T>> tasks) throws SQLException {
+        List<Future<T>> futures;
+        try {
+            futures = fanOutExecutor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during shard fan-out", e);
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted during shard fan-out", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,153 @@
+package hello.jdbc.warmup;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// 애플리케이션 시작 시점 워밍업
+// 배포 직후에는 커넥션 풀이 비어 있고 (요청이 올 때마다 Connection 을 새로 만든다.), PreparedStatement 도 처음 파싱해야 하며,
+// Repository 코드도 JIT 컴파일 전이라 처음 몇백 건의 이체가 느리다. 요청을 받기 전에 다음 단계를 실행한다.
+// 1) pool       : 풀의 minimumIdle 개수만큼 Connection 을 동시에 빌려서 물리 Connection 을 미리 만든다.
+// 2) statements : 빌린 Connection 마다 Repository 의 SQL 을 모두 prepare 한다. (Statement 캐시를 쓰면 캐시가 채워진다.)
+// 3) reads      : 조회(findById, findByIds)를 readIterations 회 실행하여 Repository 조회 경로를 JIT 컴파일 대상으로 만든다.
+// ApplicationRunner 는 스프링 부트가 ReadinessState.ACCEPTING_TRAFFIC 을 발행하기 전에 실행되므로,
+// 워밍업이 끝나야 readiness 가 ACCEPTING_TRAFFIC 이 된다. (워밍업 중에는 REFUSING_TRAFFIC)
+// 워밍업 실패(테이블이 아직 없는 경우 등)는 경고만 남기고 시작을 막지 않는다.
+@Slf4j
+public class StartupWarmup implements ApplicationRunner {
+
+    public static final String STAGE_POOL = "pool";
+    public static final String STAGE_STATEMENTS = "statements";
+    public static final String STAGE_READS = "reads";
+
+    // 조회 워밍업에 사용할 회원 id 수
+    private static final int SAMPLE_SIZE = 16;
+
+    private final DataSource dataSource;
+    private final MemberRepositoryV2 repository;
+    private final int readIterations;
+
+    // 단계별 소요 시간 (ms), 실행 순서대로
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+
+    public StartupWarmup(DataSource dataSource, MemberRepositoryV2 repository, int readIterations) {
+        if (readIterations < 0) {
+            throw new IllegalArgumentException("readIterations must not be negative readIterations=" + readIterations);
+        }
+        this.dataSource = dataSource;
+        this.repository = repository;
+        this.readIterations = readIterations;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmup();
+    }
+
+    public synchronized void warmup() {
+        long startedAt = System.nanoTime();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            long stageStartedAt = System.nanoTime();
+            fillPool(connections);
+            endStage(STAGE_POOL, stageStartedAt, "connections=" + connections.size());
+
+            stageStartedAt = System.nanoTime();
+            int prepared = 0;
+            for (Connection conn : connections) {
+                prepared += repository.prepareStatements(conn);
+            }
+            endStage(STAGE_STATEMENTS, stageStartedAt, "prepared=" + prepared);
+        } finally {
+            for (Connection conn : connections) {
+                JdbcUtils.closeConnection(conn);
+            }
+        }
+
+        long stageStartedAt = System.nanoTime();
+        int reads = runReads();
+        endStage(STAGE_READS, stageStartedAt, "reads=" + reads);
+
+        log.info("warmup finished elapsedMs={}, stages={}", elapsedMillis(startedAt), stageMillis);
+    }
+
+    public synchronized Map<String, Long> getStageMillis() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stageMillis));
+    }
+
+    // 풀이 minimumIdle 개수만큼 Connection 을 만들 때까지 기다리지 않고, 그만큼 동시에 빌려서 바로 만들게 한다.
+    // HikariCP 가 아닌 DataSource 는 Connection 하나로 statements 단계만 실행한다.
+    private void fillPool(List<Connection> connections) {
+        int target = 1;
+        if (dataSource instanceof HikariDataSource) {
+            target = Math.max(((HikariDataSource) dataSource).getMinimumIdle(), 1);
+        }
+        try {
+            for (int i = 0; i < target; i++) {
+                connections.add(dataSource.getConnection());
+            }
+        } catch (SQLException e) {
+            log.warn("pool warmup failed target={}, acquired={}", target, connections.size(), e);
+        }
+    }
+
+    // 실제 회원 id 로 조회 - 회원이 없으면 없는 id 로 조회하여 조회 경로만 실행한다.
+    private int runReads() {
+        int reads = 0;
+        try {
+            List<String> memberIds = new ArrayList<>();
+            for (Member member : repository.findPage(null, SAMPLE_SIZE).getMembers()) {
+                memberIds.add(member.getMemberId());
+            }
+            reads++;
+            if (memberIds.isEmpty()) {
+                memberIds.add("warmup");
+            }
+
+            for (int i = 0; i < readIterations; i++) {
+                // 4 회 중 1 회는 다건 조회
+                if (i % 4 == 3) {
+                    repository.findByIds(memberIds);
+                } else {
+                    findById(memberIds.get(i % memberIds.size()));
+                }
+                reads++;
+            }
+        } catch (SQLException e) {
+            log.warn("read warmup failed reads={}, message={}", reads, e.getMessage());
+        }
+        return reads;
+    }
+
+    private void findById(String memberId) throws SQLException {
+        try {
+            repository.findById(memberId);
+        } catch (NoSuchElementException e) {
+            // 없는 id 로 조회한 경우
+        }
+    }
+
+    private void endStage(String stage, long stageStartedAt, String detail) {
+        long elapsedMillis = elapsedMillis(stageStartedAt);
+        stageMillis.put(stage, elapsedMillis);
+        log.info("warmup stage={} elapsedMs={} {}", stage, elapsedMillis, detail);
+    }
+
+    private long elapsedMillis(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+}
@@ -0,0 +1,260 @@
+package hello.jdbc.audit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.service.MemberServiceV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class AuditEventWriterTest {
+
+    HikariDataSource dataSource;
+    // 소비 스레드의 Connection 획득을 막아서 버퍼가 가득 찬 상태를 만든다.
+    CountDownLatch dbAvailable = new CountDownLatch(1);
+    DataSource gatedDataSource;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        gatedDataSource = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                try {
+                    dbAvailable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(e);
+                }
+                return super.getConnection();
+            }
+        };
+        try (AuditEventWriter writer = new AuditEventWriter(dataSource, 2, 1, AuditEventWriter.OverflowPolicy.DROP, null)) {
+            writer.createTable();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        execute("delete from member_audit_event");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentRecord() throws Exception {
+        AuditEventWriter writer = new AuditEventWriter(dataSource, 1024, 100, AuditEventWriter.OverflowPolicy.BLOCK, null);
+
+        // 4개 스레드에서 동시에 기록
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    writer.record(AuditEventType.TRANSFER_ATTEMPTED, "memberA", "memberB", i, null);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        writer.close();
+
+        Assertions.assertThat(writer.getWrittenCount()).isEqualTo(2000);
+        Assertions.assertThat(count()).isEqualTo(2000);
+    }
+
+    @Test
+    void drop() throws Exception {
+        AuditEventWriter writer = new AuditEventWriter(gatedDataSource, 4, 100, AuditEventWriter.OverflowPolicy.DROP, null);
+        for (int i = 0; i < 10; i++) {
+            writer.record(AuditEventType.TRANSFER_FAILED, "memberA", "memberB", i, "reason" + i);
+        }
+
+        // 버퍼 크기(4) 만큼만 기록되고 나머지는 버려짐
+        Assertions.assertThat(writer.getDroppedCount()).isEqualTo(6);
+        dbAvailable.countDown();
+        writer.close();
+        Assertions.assertThat(count()).isEqualTo(4);
+    }
+
+    @Test
+    void spill() throws Exception {
+        Path spillFile = tempDir.resolve("audit.spill");
+        AuditEventWriter writer = new AuditEventWriter(gatedDataSource, 4, 100, AuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        for (int i = 0; i < 10; i++) {
+            writer.record(AuditEventType.TRANSFER_FAILED, "memberA", null, i, i % 2 == 0 ? null : "reason\t" + i);
+        }
+
+        // 넘친 이벤트는 파일에 기록되고, 나중에 테이블로 옮김
+        Assertions.assertThat(writer.getSpilledCount()).isEqualTo(6);
+        dbAvailable.countDown();
+        writer.close();
+        Assertions.assertThat(writer.replaySpillFile()).isEqualTo(6);
+        Assertions.assertThat(writer.replaySpillFile()).isZero();
+        Assertions.assertThat(count()).isEqualTo(10);
+    }
+
+    // insert 가 실패한 배치도 SPILL 정책이면 버리지 않고 파일에 기록
+    @Test
+    void spillFailedBatch() throws Exception {
+        AtomicBoolean dbDown = new AtomicBoolean(true);
+        DataSource failingDataSource = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (dbDown.get()) {
+                    throw new SQLException("db down");
+                }
+                return super.getConnection();
+            }
+        };
+        Path spillFile = tempDir.resolve("audit.spill");
+        AuditEventWriter writer = new AuditEventWriter(failingDataSource, 16, 100, AuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        for (int i = 0; i < 3; i++) {
+            writer.record(AuditEventType.TRANSFER_ATTEMPTED, "memberA", "memberB", i, null);
+        }
+        writer.close();
+
+        Assertions.assertThat(writer.getSpilledCount()).isEqualTo(3);
+        Assertions.assertThat(writer.getDroppedCount()).isZero();
+        dbDown.set(false);
+        Assertions.assertThat(writer.replaySpillFile()).isEqualTo(3);
+        Assertions.assertThat(count()).isEqualTo(3);
+    }
+
+    // close() 이후 기록은 버려진 것으로 셈 - 버퍼에 남지 않음
+    @Test
+    void recordAfterClose() {
+        AuditEventWriter writer = new AuditEventWriter(dataSource, 4, 100, AuditEventWriter.OverflowPolicy.BLOCK, null);
+        writer.close();
+
+        Assertions.assertThat(writer.record(AuditEventType.TRANSFER_ATTEMPTED, "memberA", "memberB", 100, null)).isFalse();
+        Assertions.assertThat(writer.getDroppedCount()).isEqualTo(1);
+        Assertions.assertThat(writer.getBacklog()).isZero();
+    }
+
+    // replay 중 실패하면 전부 롤백하고 파일은 그대로 - 다시 replay 해도 중복 insert 없음
+    @Test
+    void replayIsAllOrNothing() throws Exception {
+        Path spillFile = tempDir.resolve("audit.spill");
+        long now = System.currentTimeMillis();
+        Files.write(spillFile, List.of(
+                now + "\tTRANSFER_ATTEMPTED\tmemberA\tmemberB\t100\t",
+                now + "\tTRANSFER_ATTEMPTED\tmemberA-too-long-id\tmemberB\t100\t"));
+        AuditEventWriter writer = new AuditEventWriter(dataSource, 4, 100, AuditEventWriter.OverflowPolicy.SPILL, spillFile);
+        writer.close();
+
+        Assertions.assertThatThrownBy(writer::replaySpillFile).isInstanceOf(SQLException.class);
+        Assertions.assertThat(count()).isZero();
+        Assertions.assertThat(Files.readAllLines(spillFile)).hasSize(2);
+    }
+
+    @Test
+    void block() throws Exception {
+        AuditEventWriter writer = new AuditEventWriter(gatedDataSource, 4, 100, AuditEventWriter.OverflowPolicy.BLOCK, null);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                writer.record(AuditEventType.TRANSFER_ATTEMPTED, "memberA", "memberB", i, null);
+            }
+        });
+        producer.start();
+
+        // 버퍼가 비워질 때까지 기록하는 쪽이 대기
+        producer.join(200);
+        Assertions.assertThat(producer.isAlive()).isTrue();
+        Assertions.assertThat(writer.getBacklog()).isEqualTo(4);
+
+        dbAvailable.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        writer.close();
+        Assertions.assertThat(count()).isEqualTo(10);
+    }
+
+    @Test
+    void transferEvents() throws Exception {
+        MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, repository);
+        AuditEventWriter writer = new AuditEventWriter(dataSource, 64, 10, AuditEventWriter.OverflowPolicy.DROP, null);
+        memberService.setAuditWriter(writer);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        try {
+            memberService.accountTransfer("memberA", "memberB", 2000);
+            Assertions.assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 20000))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            writer.close();
+            repository.deleteAll();
+        }
+
+        Assertions.assertThat(count()).isEqualTo(4);
+        Assertions.assertThat(count("select count(*) from member_audit_event where event_type = 'TRANSFER_FAILED' and reason is not null")).isEqualTo(1);
+    }
+
+    // money 가 null 인 이체도 감사 이벤트 기록 중 NPE 없이 IllegalStateException 으로 실패
+    @Test
+    void transferWithNullMoney() throws Exception {
+        MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, repository);
+        AuditEventWriter writer = new AuditEventWriter(dataSource, 64, 10, AuditEventWriter.OverflowPolicy.DROP, null);
+        memberService.setAuditWriter(writer);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        try {
+            Assertions.assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", null))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            writer.close();
+            repository.deleteAll();
+        }
+
+        Assertions.assertThat(count("select count(*) from member_audit_event where money is null")).isEqualTo(2);
+    }
+
+    private int count() throws SQLException {
+        return count("select count(*) from member_audit_event");
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
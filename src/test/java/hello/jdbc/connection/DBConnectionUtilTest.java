@@ -6,6 +6,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
 
 class DBConnectionUtilTest {
 
@@ -18,8 +21,90 @@ class DBConnectionUtilTest {
     }
 
     @Test
-    void getConnection() {
+    void getConnection() throws SQLException {
+        // 풀의 프록시가 반환되며, 물리 Connection 은 H2 의 JdbcConnection
         Connection connection = DBConnectionUtil.getConnection();
-        Assertions.assertThat(connection.getClass()).isSameAs(org.h2.jdbc.JdbcConnection.class);
+        Assertions.assertThat(connection.isWrapperFor(org.h2.jdbc.JdbcConnection.class)).isTrue();
+        Assertions.assertThat(connection.unwrap(org.h2.jdbc.JdbcConnection.class).getClass()).isSameAs(org.h2.jdbc.JdbcConnection.class);
+        connection.close();
+    }
+
+    @Test
+    void reuseAfterClose() throws SQLException {
+        // close() 하면 풀에 반환되고, 다음 getConnection() 에서 같은 물리 Connection 을 재사용
+        Connection con1 = DBConnectionUtil.getConnection();
+        Connection physical1 = con1.unwrap(Connection.class);
+        con1.close();
+        Assertions.assertThat(con1.isClosed()).isTrue();
+        Assertions.assertThat(physical1.isClosed()).isFalse();
+
+        Connection con2 = DBConnectionUtil.getConnection();
+        Assertions.assertThat(con2.unwrap(Connection.class)).isSameAs(physical1);
+        con2.close();
+    }
+
+    @Test
+    void resetOnReturn() throws SQLException {
+        // 반환 시 커밋되지 않은 작업은 롤백되고, AutoCommit 은 원복됨
+        Connection con1 = DBConnectionUtil.getConnection();
+        con1.setAutoCommit(false);
+        con1.close();
+
+        Connection con2 = DBConnectionUtil.getConnection();
+        Assertions.assertThat(con2.getAutoCommit()).isTrue();
+        con2.close();
+    }
+
+    @Test
+    void maxSizeAndValidation() throws SQLException {
+        SimpleConnectionPool pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 0, 1, 60_000, 100);
+        try {
+            Connection con1 = pool.getConnection();
+            // 최대 1개 - 대기 시간 초과
+            Assertions.assertThatThrownBy(pool::getConnection).isInstanceOf(SQLException.class);
+
+            // 물리 Connection 이 끊어진 경우, 대여 시 검사에서 걸러지고 새 Connection 을 생성
+            // (최근에 사용한 Connection 은 검사를 생략하므로, 검사 생략 시간이 지난 뒤 대여)
+            Connection physical = con1.unwrap(Connection.class);
+            con1.close();
+            physical.close();
+            sleep(600);
+            try (Connection con2 = pool.getConnection()) {
+                Assertions.assertThat(con2.unwrap(Connection.class)).isNotSameAs(physical);
+                Assertions.assertThat(con2.isValid(1)).isTrue();
+            }
+            Assertions.assertThat(pool.getTotalCount()).isEqualTo(1);
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void totalNeverExceedsMaxSize() throws SQLException {
+        // 대여중인 Connection 이 있는 동안 백그라운드 작업이 minIdle 을 채워도 물리 Connection 은 maxSize 개 이하
+        // (idleTimeout 2초 -> 1초마다 백그라운드 작업 실행)
+        SimpleConnectionPool pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 2, 2, 2000, 1000);
+        try {
+            sleep(200);
+            Connection con1 = pool.getConnection();
+            sleep(1200);
+            Assertions.assertThat(pool.getTotalCount()).isEqualTo(2);
+            Assertions.assertThat(pool.getIdleCount()).isEqualTo(1);
+
+            Connection con2 = pool.getConnection();
+            Assertions.assertThat(pool.getTotalCount()).isEqualTo(2);
+            con1.close();
+            con2.close();
+        } finally {
+            pool.close();
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
-}
\ No newline at end of file
+}
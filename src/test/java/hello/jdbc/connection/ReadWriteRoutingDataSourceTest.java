@@ -0,0 +1,175 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+// primary 는 tcp 서버의 test DB, 복제본은 메모리 DB 2개를 사용
+// 복제가 없으므로, 복제본에 다른 값을 넣어두고 어느 DB 에서 읽었는지 확인한다.
+@Slf4j
+class ReadWriteRoutingDataSourceTest {
+
+    HikariDataSource primary;
+    HikariDataSource replica0;
+    HikariDataSource replica1;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = dataSource(URL);
+        replica0 = dataSource("jdbc:h2:mem:replica0;DB_CLOSE_DELAY=-1");
+        replica1 = dataSource("jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1");
+        initReplica(replica0, 1000);
+        initReplica(replica1, 2000);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        new MemberRepositoryV2(primary).deleteAll();
+        primary.close();
+        replica0.close();
+        replica1.close();
+    }
+
+    @Test
+    void roundRobin() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica0, replica1), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        MemberRepositoryV2 repository = new MemberRepositoryV2(routing);
+
+        // 쓰기는 primary
+        repository.save(new Member("memberA", 10000));
+
+        // 트랜잭션 밖의 조회는 복제본을 번갈아 사용
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(2000);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+        Assertions.assertThat(routing.getReplicaReadCount(0)).isEqualTo(2);
+        Assertions.assertThat(routing.getReplicaReadCount(1)).isEqualTo(1);
+        Assertions.assertThat(routing.getReplicaActiveCount(0)).isZero();
+    }
+
+    @Test
+    void transactionUsesPrimary() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica0), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        MemberRepositoryV2 repository = new MemberRepositoryV2(routing);
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        repository.save(new Member("memberA", 10000));
+
+        Integer money = txTemplate.execute(status -> {
+            try {
+                return repository.findById("memberA").getMoney();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Assertions.assertThat(money).isEqualTo(10000);
+        Assertions.assertThat(routing.getReplicaReadCount(0)).isZero();
+    }
+
+    @Test
+    void readYourWrites() throws Exception {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica0), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        routing.setReadYourWritesWindow(300, TimeUnit.MILLISECONDS);
+        MemberRepositoryV2 repository = new MemberRepositoryV2(routing);
+
+        // 쓰기 직후의 조회는 primary
+        repository.save(new Member("memberA", 10000));
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(routing.getPrimaryReadCount()).isEqualTo(1);
+
+        // 다른 스레드는 쓰기를 하지 않았으므로 복제본
+        Thread other = new Thread(() -> {
+            try {
+                Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.start();
+        other.join();
+        Assertions.assertThat(routing.getReplicaReadCount(0)).isEqualTo(1);
+
+        // 시간이 지나면 다시 복제본
+        Thread.sleep(400);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+    }
+
+    @Test
+    void leastBusy() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica0, replica1), ReadWriteRoutingDataSource.ReplicaSelection.LEAST_BUSY);
+        MemberRepositoryV2 repository = new MemberRepositoryV2(routing);
+        repository.save(new Member("memberA", 10000));
+
+        // 복제본 0 의 Connection 을 대여한 상태에서는 계속 복제본 1 을 선택
+        Connection held = ReadWriteRoutingDataSource.withReadHint(routing::getConnection);
+        try {
+            Assertions.assertThat(routing.getReplicaActiveCount(0)).isEqualTo(1);
+            Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(2000);
+            Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(2000);
+        } finally {
+            held.close();
+        }
+        Assertions.assertThat(routing.getReplicaActiveCount(0)).isZero();
+        Assertions.assertThat(routing.getReplicaReadCount(1)).isEqualTo(2);
+    }
+
+    @Test
+    void fallbackToPrimary() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, List.of(replica0), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+        MemberRepositoryV2 repository = new MemberRepositoryV2(routing);
+        repository.save(new Member("memberA", 10000));
+
+        // 복제본을 사용할 수 없으면 primary 에서 읽음
+        replica0.close();
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(routing.getPrimaryReadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void perCallCredentials() throws SQLException {
+        // 계정을 지정해도 같은 방식으로 라우팅 (HikariCP 는 계정 지정을 지원하지 않으므로 DriverManagerDataSource 사용)
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(new DriverManagerDataSource(URL),
+                List.of(new DriverManagerDataSource("jdbc:h2:mem:replica0")), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+
+        try (Connection conn = ReadWriteRoutingDataSource.withReadHint(() -> routing.getConnection(USERNAME, PASSWORD))) {
+            Assertions.assertThat(conn.getMetaData().getURL()).isEqualTo("jdbc:h2:mem:replica0");
+        }
+        try (Connection conn = routing.getConnection(USERNAME, PASSWORD)) {
+            Assertions.assertThat(conn.getMetaData().getURL()).isEqualTo(URL);
+        }
+        Assertions.assertThat(routing.getReplicaReadCount(0)).isEqualTo(1);
+    }
+
+    private HikariDataSource dataSource(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+
+    private void initReplica(HikariDataSource replica, int money) throws SQLException {
+        try (Connection conn = replica.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("create table if not exists member (member_id varchar(10) primary key, money integer not null default 0)");
+            stmt.execute("delete from member");
+            stmt.execute("insert into member values ('memberA', " + money + ")");
+        }
+    }
+}
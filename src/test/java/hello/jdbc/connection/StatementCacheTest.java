@@ -0,0 +1,120 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class StatementCacheTest {
+
+    HikariDataSource dataSource;
+    StatementCache statementCache;
+
+    @BeforeEach
+    void setUp() {
+        // 커넥션을 1개만 사용하도록 하여, 풀에 반환 후 같은 물리 커넥션을 다시 받도록 설정
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(1);
+        statementCache = new StatementCache(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statementCache.clear();
+        dataSource.close();
+    }
+
+    @Test
+    void reuseAcrossCheckout() throws SQLException {
+        String sql = "select * from member where member_id = ?";
+
+        // 첫번째 커넥션 획득 - 캐시 미스
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = statementCache.prepare(conn, sql)) {
+            pstmt.setString(1, "memberA");
+            pstmt.executeQuery().close();
+        }
+
+        // 풀에 반환 후 다시 획득 - 같은 물리 커넥션이므로 캐시 히트
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = statementCache.prepare(conn, sql)) {
+            pstmt.setString(1, "memberA");
+            pstmt.executeQuery().close();
+        }
+
+        log.info("statementCache={}", statementCache);
+        Assertions.assertThat(statementCache.getMissCount()).isEqualTo(1);
+        Assertions.assertThat(statementCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void inUseStatementIsNotShared() throws SQLException {
+        String sql = "select * from member where member_id = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt1 = statementCache.prepare(conn, sql);
+             PreparedStatement pstmt2 = statementCache.prepare(conn, sql)) {
+            // 사용중인 PreparedStatement 는 다른 사용자에게 주지 않음
+            Assertions.assertThat(pstmt1.unwrap(org.h2.jdbc.JdbcPreparedStatement.class))
+                    .isNotSameAs(pstmt2.unwrap(org.h2.jdbc.JdbcPreparedStatement.class));
+        }
+    }
+
+    @Test
+    void lruEviction() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            statementCache.prepare(conn, "select 1").close();
+            statementCache.prepare(conn, "select 2").close();
+            statementCache.prepare(conn, "select 1").close();
+            // 최대 2개 - 가장 오래 사용하지 않은 "select 2" 가 제거됨
+            statementCache.prepare(conn, "select 3").close();
+            statementCache.prepare(conn, "select 1").close();
+        }
+        Assertions.assertThat(statementCache.size()).isEqualTo(2);
+        Assertions.assertThat(statementCache.getEvictionCount()).isEqualTo(1);
+        Assertions.assertThat(statementCache.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void closedConnectionIsInvalidated() throws SQLException {
+        // 물리 커넥션이 닫히면 캐시된 PreparedStatement 도 사용하지 않음
+        Connection conn = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        statementCache.prepare(conn, "select 1").close();
+        conn.close();
+
+        Connection newConn = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        PreparedStatement pstmt = statementCache.prepare(newConn, "select 1");
+        Assertions.assertThat(pstmt.executeQuery().next()).isTrue();
+        pstmt.close();
+        newConn.close();
+
+        Assertions.assertThat(statementCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void repositoryWithCache() throws SQLException {
+        MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+        repository.setStatementCache(statementCache);
+
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+        repository.findById("memberA");
+        repository.update("memberA", 20000);
+
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(20000);
+        Assertions.assertThat(statementCache.getHitCount()).isEqualTo(2);
+        repository.deleteAll();
+    }
+}
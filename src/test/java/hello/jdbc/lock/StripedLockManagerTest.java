@@ -0,0 +1,89 @@
+package hello.jdbc.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+class StripedLockManagerTest {
+
+    @Test
+    void oppositeOrderDoesNotDeadlock() throws Exception {
+        StripedLockManager lockManager = new StripedLockManager(16);
+        int[] counter = new int[1];
+
+        // A,B 와 B,A 순서로 동시에 잠가도 스트라이프 순서로 획득하므로 교착 상태 없음
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                StripedLockManager.Locks locks = forward ? lockManager.lock("memberA", "memberB") : lockManager.lock("memberB", "memberA");
+                try {
+                    counter[0]++;
+                } finally {
+                    locks.close();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 락 안에서만 변경했으므로 유실 없음
+        Assertions.assertThat(counter[0]).isEqualTo(1000);
+        StripeStats stats = lockManager.stats(lockManager.stripe("memberA"));
+        log.info("stats={}", stats);
+        Assertions.assertThat(stats.getAcquireCount()).isEqualTo(1000);
+        Assertions.assertThat(stats.getQueueLength()).isZero();
+    }
+
+    @Test
+    void contention() throws Exception {
+        StripedLockManager lockManager = new StripedLockManager(4);
+        int stripe = lockManager.stripe("memberA");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> waiter;
+        StripedLockManager.Locks locks = lockManager.lock("memberA");
+        try {
+            waiter = executor.submit(() -> lockManager.lock("memberA").close());
+            while (lockManager.stats(stripe).getQueueLength() == 0) {
+                Thread.sleep(1);
+            }
+        } finally {
+            locks.close();
+        }
+        waiter.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        StripeStats stats = lockManager.stats(stripe);
+        Assertions.assertThat(stats.getAcquireCount()).isEqualTo(2);
+        Assertions.assertThat(stats.getContendedCount()).isEqualTo(1);
+        Assertions.assertThat(stats.getTotalWaitNanos()).isPositive();
+        Assertions.assertThat(lockManager.stats()).hasSize(4);
+    }
+
+    @Test
+    void sameStripeIsLockedOnce() {
+        // 스트라이프가 1개면 모든 회원이 같은 스트라이프 - 한 번만 잠그고 한 번만 해제
+        StripedLockManager lockManager = new StripedLockManager(1);
+        StripedLockManager.Locks locks = lockManager.lock("memberA", "memberB");
+        try {
+            Assertions.assertThat(lockManager.stats(0).getAcquireCount()).isEqualTo(1);
+        } finally {
+            locks.close();
+        }
+        Assertions.assertThat(lockManager.stats(0).getQueueLength()).isZero();
+        lockManager.lock("memberC").close();
+        Assertions.assertThat(lockManager.stats(0).getContendedCount()).isZero();
+    }
+}
@@ -0,0 +1,99 @@
+package hello.jdbc.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.service.MemberServiceV2;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        log.info("snapshot={}", snapshot);
+
+        // 구간 대표값을 사용하므로 상대 오차 약 3% 이내
+        Assertions.assertThat(snapshot.getCount()).isEqualTo(1000);
+        Assertions.assertThat(snapshot.getP50Nanos()).isCloseTo(500_000L, Assertions.withinPercentage(3));
+        Assertions.assertThat(snapshot.getP99Nanos()).isCloseTo(990_000L, Assertions.withinPercentage(3));
+        Assertions.assertThat(snapshot.getP999Nanos()).isCloseTo(999_000L, Assertions.withinPercentage(3));
+        Assertions.assertThat(snapshot.getMaxNanos()).isEqualTo(1_000_000L);
+        Assertions.assertThat(snapshot.getMeanNanos()).isEqualTo(500_500.0);
+    }
+
+    @Test
+    void bucketBoundaries() {
+        // 작은 값은 정확히, 큰 값은 구간 대표값으로 기록
+        Assertions.assertThat(LatencyHistogram.middle(LatencyHistogram.index(7))).isEqualTo(7);
+        Assertions.assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isLessThan((Long.SIZE - 4) * 32);
+        for (long value = 1; value < Long.MAX_VALUE / 3; value *= 3) {
+            Assertions.assertThat(LatencyHistogram.middle(LatencyHistogram.index(value))).isCloseTo(value, Assertions.withinPercentage(3.2));
+        }
+    }
+
+    @Test
+    void repositoryAndServicePhases() throws SQLException {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        HistogramLatencyRegistry registry = new HistogramLatencyRegistry();
+        MemberRepositoryV2 memberRepository = new MemberRepositoryV2(dataSource);
+        memberRepository.setLatencyRegistry(registry);
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, memberRepository);
+        memberService.setLatencyRegistry(registry);
+
+        try {
+            memberRepository.save(new Member("memberA", 10000));
+            memberRepository.save(new Member("memberB", 10000));
+            memberService.accountTransfer("memberA", "memberB", 1000);
+            memberRepository.findById("memberA");
+            memberRepository.forEachRow((memberId, money) -> {
+            });
+
+            registry.snapshots().forEach((name, snapshot) -> log.info("{}={}", name, snapshot));
+            Assertions.assertThat(registry.snapshot("member.repository.save").getCount()).isEqualTo(2);
+            Assertions.assertThat(registry.snapshot("member.repository.withdraw").getCount()).isEqualTo(1);
+            // forEachRow 는 forEach 와 따로 기록
+            Assertions.assertThat(registry.snapshot("member.repository.forEachRow").getCount()).isEqualTo(1);
+            Assertions.assertThat(registry.snapshot("member.repository.forEach").getCount()).isEqualTo(0);
+            // save 2, 이체(차감 + 증가) 2, findById 1, forEachRow 1
+            Assertions.assertThat(registry.snapshot("member.repository.execute").getCount()).isEqualTo(6);
+            Assertions.assertThat(registry.snapshot("member.service.accountTransfer").getCount()).isEqualTo(1);
+            Assertions.assertThat(registry.snapshot("member.service.begin").getCount()).isEqualTo(1);
+            Assertions.assertThat(registry.snapshot("member.service.commit").getCount()).isEqualTo(1);
+            Assertions.assertThat(registry.snapshot("member.service.rollback").getCount()).isEqualTo(0);
+        } finally {
+            memberRepository.deleteAll();
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void micrometer() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LatencyRecorder recorder = new MicrometerLatencyRegistry(meterRegistry).recorder("member.repository.findById");
+        recorder.record(1_000_000);
+        recorder.record(3_000_000);
+
+        Timer timer = meterRegistry.get("member.repository.findById").timer();
+        Assertions.assertThat(timer.count()).isEqualTo(2);
+        Assertions.assertThat(timer.totalTime(java.util.concurrent.TimeUnit.MILLISECONDS)).isEqualTo(4.0);
+    }
+}
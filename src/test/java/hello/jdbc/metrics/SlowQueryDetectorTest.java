@@ -0,0 +1,135 @@
+package hello.jdbc.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class SlowQueryDetectorTest {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 repository;
+    List<SlowQuery> slowQueries = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new MemberRepositoryV2(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.setSlowQueryDetector(null);
+        repository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void reportWithMaskedParameters() throws SQLException {
+        // 임계 시간 0 - 모든 SQL 을 느린 SQL 로 기록
+        SlowQueryDetector detector = new SlowQueryDetector(0, TimeUnit.MILLISECONDS);
+        detector.setReporter(slowQueries::add);
+        repository.setSlowQueryDetector(detector);
+
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+
+        slowQueries.forEach(slowQuery -> log.info("{}", slowQuery));
+        Assertions.assertThat(slowQueries).hasSize(2);
+        SlowQuery insert = slowQueries.get(0);
+        Assertions.assertThat(insert.getSql()).startsWith("insert into member");
+        Assertions.assertThat(insert.getParameters()).containsExactly("me*****", "*****");
+        Assertions.assertThat(insert.getConnectionId()).startsWith("conn");
+        Assertions.assertThat(insert.getPlan()).isNull();
+    }
+
+    @Test
+    void belowThresholdIsNotReported() throws SQLException {
+        SlowQueryDetector detector = new SlowQueryDetector(1, TimeUnit.MINUTES);
+        detector.setReporter(slowQueries::add);
+        repository.setSlowQueryDetector(detector);
+
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+
+        Assertions.assertThat(slowQueries).isEmpty();
+        Assertions.assertThat(detector.getSlowCount()).isZero();
+    }
+
+    @Test
+    void explainIsRateLimited() throws SQLException {
+        SlowQueryDetector detector = new SlowQueryDetector(0, TimeUnit.MILLISECONDS);
+        detector.setReporter(slowQueries::add);
+        detector.setExplainDataSource(dataSource);
+        detector.setExplainInterval(1, TimeUnit.MINUTES);
+        repository.setSlowQueryDetector(detector);
+
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+        repository.findById("memberA");
+        // EXPLAIN 은 별도 스레드에서 실행되므로 끝날 때까지 대기
+        detector.close();
+
+        // 첫번째 느린 SQL 만 EXPLAIN 수집, 나머지는 interval 안이므로 생략
+        Assertions.assertThat(detector.getSlowCount()).isEqualTo(3);
+        Assertions.assertThat(detector.getExplainCount()).isEqualTo(1);
+        Assertions.assertThat(slowQueries).hasSize(3);
+        Assertions.assertThat(slowQueries).filteredOn(slowQuery -> slowQuery.getPlan() != null)
+                .singleElement()
+                .satisfies(slowQuery -> Assertions.assertThat(slowQuery.getPlan()).containsIgnoringCase("insert into"));
+    }
+
+    // EXPLAIN 은 SQL 을 실행한 Connection 이 아닌 별도 Connection 에서 실행 - 호출한 쪽 트랜잭션과 무관
+    @Test
+    void explainRunsOnSeparateConnection() throws SQLException {
+        AtomicInteger explainConnections = new AtomicInteger();
+        DataSource explainDataSource = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                explainConnections.incrementAndGet();
+                return super.getConnection();
+            }
+        };
+        SlowQueryDetector detector = new SlowQueryDetector(0, TimeUnit.MILLISECONDS);
+        detector.setReporter(slowQueries::add);
+        detector.setExplainDataSource(explainDataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.setSlowQueryDetector(detector);
+
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        txTemplate.executeWithoutResult(status -> {
+            try {
+                repository.findById("memberA");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        detector.close();
+
+        Assertions.assertThat(explainConnections.get()).isEqualTo(1);
+        Assertions.assertThat(detector.getExplainCount()).isEqualTo(1);
+        Assertions.assertThat(slowQueries).hasSize(1);
+        Assertions.assertThat(slowQueries.get(0).getPlan()).containsIgnoringCase("select");
+    }
+}
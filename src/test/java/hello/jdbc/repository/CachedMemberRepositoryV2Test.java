@@ -0,0 +1,129 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.cache.CacheStats;
+import hello.jdbc.cache.MemberCache;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class CachedMemberRepositoryV2Test {
+
+    HikariDataSource dataSource;
+    CachedMemberRepositoryV2 repository;
+    DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new CachedMemberRepositoryV2(dataSource, new MemberCache(2, 1, TimeUnit.MINUTES));
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void readThrough() throws SQLException {
+        repository.save(new Member("memberA", 10000));
+
+        repository.findById("memberA");
+        Member cached = repository.findById("memberA");
+        // 캐시된 객체를 변경해도 캐시에는 영향 없음
+        cached.setMoney(0);
+
+        CacheStats stats = repository.cacheStats();
+        log.info("stats={}", stats);
+        Assertions.assertThat(stats.getHitCount()).isEqualTo(1);
+        Assertions.assertThat(stats.getMissCount()).isEqualTo(1);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void invalidateOnWrite() throws SQLException {
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+
+        repository.update("memberA", 20000);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(20000);
+
+        repository.delete("memberA");
+        Assertions.assertThatThrownBy(() -> repository.findById("memberA")).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void findByIds() throws SQLException {
+        repository.save(new Member("memberA", 1));
+        repository.save(new Member("memberB", 2));
+        repository.findById("memberA");
+
+        // memberA 는 캐시에서, memberB 와 memberC(없음) 는 DB 에서 조회
+        MemberLookup lookup = repository.findByIds(List.of("memberB", "memberA", "memberC"));
+
+        Assertions.assertThat(lookup.getMembers().keySet()).containsExactly("memberB", "memberA");
+        Assertions.assertThat(lookup.getMissingIds()).containsExactly("memberC");
+        Assertions.assertThat(repository.cacheStats().getHitCount()).isEqualTo(1);
+        // 조회한 memberB 는 캐시에 저장됨
+        Assertions.assertThat(repository.findById("memberB").getMoney()).isEqualTo(2);
+        Assertions.assertThat(repository.cacheStats().getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void eviction() throws SQLException {
+        repository.save(new Member("memberA", 1));
+        repository.save(new Member("memberB", 2));
+        repository.save(new Member("memberC", 3));
+
+        repository.findById("memberA");
+        repository.findById("memberB");
+        repository.findById("memberC");
+
+        Assertions.assertThat(repository.cacheStats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void uncommittedWriteIsNotCached() throws SQLException {
+        repository.save(new Member("memberA", 10000));
+        repository.findById("memberA");
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        repository.withdraw("memberA", 3000);
+        // 트랜잭션 안의 조회 - 캐시를 거치지 않고 자신의 변경을 읽음
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(7000);
+
+        // 트랜잭션 밖의 조회 - 커밋 전 값(10000)을 읽어 캐시에 저장
+        Member outside = CompletableFuture.supplyAsync(() -> {
+            try {
+                return repository.findById("memberA");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).join();
+        Assertions.assertThat(outside.getMoney()).isEqualTo(10000);
+
+        // 커밋 후 캐시가 무효화되어 커밋된 값을 읽음
+        transactionManager.commit(status);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(7000);
+    }
+}
@@ -0,0 +1,224 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.service.MemberServiceV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class CreditBufferTest {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 repository;
+    TransactionTemplate txTemplate;
+    CreditBuffer creditBuffer;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new MemberRepositoryV2(dataSource);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // 주기 실행은 사실상 끄고, 테스트에서 직접 flush
+        creditBuffer = newCreditBuffer();
+        creditBuffer.createJournalTable();
+        creditBuffer.flush();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        creditBuffer.close();
+        repository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void creditAndFlush() throws Exception {
+        // given
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("fee", 0));
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, repository);
+        memberService.setCreditBuffer(creditBuffer);
+
+        // when - 수수료 계좌로 동시에 입금
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(() -> {
+                memberService.accountTransfer("memberA", "fee", 100);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then - member 테이블에는 아직 반영되지 않았지만, 조회는 반영 대기 금액(journal)을 더해서 보여줌
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+        Assertions.assertThat(creditBuffer.getPending("fee")).isEqualTo(2000);
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(2000);
+        Assertions.assertThat(creditBuffer.findById("fee").getMoney()).isEqualTo(2000);
+
+        // flush 후 member 테이블에 반영
+        creditBuffer.flush();
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(2000);
+        Assertions.assertThat(creditBuffer.getPending("fee")).isZero();
+        Assertions.assertThat(creditBuffer.findById("fee").getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    void groupTransferCreditsThroughBuffer() throws SQLException {
+        // given
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        repository.save(new Member("fee", 0));
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, repository);
+        memberService.setCreditBuffer(creditBuffer);
+
+        // when - group commit 으로도 버퍼 대상 계좌는 journal 에 기록
+        Map<Integer, RuntimeException> failures = memberService.accountTransferGroup(List.of(
+                new Transfer("memberB", "fee", 100),
+                new Transfer("memberB", "memberA", 1000),
+                new Transfer("memberA", "fee", 200)));
+
+        // then
+        Assertions.assertThat(failures).isEmpty();
+        Assertions.assertThat(creditBuffer.getPending("fee")).isEqualTo(300);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10800);
+        Assertions.assertThat(repository.findById("memberB").getMoney()).isEqualTo(8900);
+        creditBuffer.flush();
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(300);
+    }
+
+    @Test
+    void rolledBackCreditIsNotPending() throws SQLException {
+        repository.save(new Member("fee", 0));
+
+        txTemplate.executeWithoutResult(status -> {
+            try {
+                creditBuffer.credit("fee", 500);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertThat(creditBuffer.getPending("fee")).isZero();
+        creditBuffer.flush();
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(0);
+    }
+
+    @Test
+    void recoverAfterRestart() throws SQLException {
+        // given - 반영되기 전에 프로세스가 종료된 상황 (journal 만 남아 있음)
+        repository.save(new Member("fee", 0));
+        creditBuffer.credit("fee", 100);
+        creditBuffer.credit("fee", 200);
+
+        // when - 새로 시작한 버퍼가 남은 journal 을 반영
+        CreditBuffer restarted = newCreditBuffer();
+        try {
+            Assertions.assertThat(restarted.getPending("fee")).isEqualTo(300);
+            restarted.flush();
+        } finally {
+            restarted.close();
+        }
+
+        // then
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(300);
+    }
+
+    @Test
+    void keepJournalOfMissingMember() throws SQLException {
+        // given - 입금 기록 후 회원 행이 삭제된 상황
+        repository.save(new Member("fee", 0));
+        creditBuffer.credit("fee", 700);
+        repository.delete("fee");
+
+        // when - 반영할 행이 없으므로 journal 은 삭제되지 않음
+        Assertions.assertThat(creditBuffer.flush()).isZero();
+        Assertions.assertThat(creditBuffer.getPending("fee")).isEqualTo(700);
+
+        // then - 회원이 다시 생기면 다음 flush 에서 반영
+        repository.save(new Member("fee", 0));
+        Assertions.assertThat(creditBuffer.flush()).isEqualTo(1);
+        Assertions.assertThat(creditBuffer.getPending("fee")).isZero();
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(700);
+    }
+
+    // 두 인스턴스가 동시에 flush - 같은 journal 을 두 번 반영하지 않음
+    @Test
+    void concurrentFlushAppliesJournalOnce() throws Exception {
+        repository.save(new Member("fee", 0));
+        CreditBuffer otherInstance = newCreditBuffer();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 5; i++) {
+                    creditBuffer.credit("fee", 100);
+                }
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (CreditBuffer buffer : List.of(creditBuffer, otherInstance)) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            buffer.flush();
+                        } catch (RuntimeException e) {
+                            // 다른 flush 가 먼저 반영해서 롤백된 경우
+                            log.info("flush rolled back message={}", e.getMessage());
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            otherInstance.close();
+        }
+        creditBuffer.flush();
+
+        Assertions.assertThat(creditBuffer.getPending("fee")).isZero();
+        Assertions.assertThat(repository.findById("fee").getMoney()).isEqualTo(5000);
+    }
+
+    @Test
+    void missingBufferedAccount() {
+        MemberServiceV2 memberService = new MemberServiceV2(dataSource, repository);
+
+        Assertions.assertThatThrownBy(() -> memberService.setCreditBuffer(creditBuffer))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    private CreditBuffer newCreditBuffer() {
+        return new CreditBuffer(dataSource, repository, txTemplate, Set.of("fee"), 1, TimeUnit.HOURS);
+    }
+}
@@ -0,0 +1,297 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class MemberRepositoryV2Test {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new MemberRepositoryV2(dataSource);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.deleteAll();
+        // createVersionColumn 으로 추가한 컬럼 제거 - 공용 member 테이블을 원래대로
+        repository.dropVersionColumn();
+        dataSource.close();
+    }
+
+    @Test
+    void saveAll() throws SQLException {
+        // given
+        List<Member> members = members("bulk", 25);
+
+        // when
+        BatchResult result = repository.saveAll(members, 10);
+
+        // then
+        log.info("result={}, chunks={}", result, result.getChunks());
+        Assertions.assertThat(result.getChunks()).hasSize(3);
+        Assertions.assertThat(result.getSavedCount()).isEqualTo(25);
+        Assertions.assertThat(result.isAllSaved()).isTrue();
+        Assertions.assertThat(repository.findById("bulk24").getMoney()).isEqualTo(24);
+    }
+
+    @Test
+    void saveAllRollbackChunk() throws SQLException {
+        // given - 두번째 청크에 중복 키를 넣어 실패를 유도
+        repository.save(new Member("bulk12", 0));
+        List<Member> members = members("bulk", 25);
+
+        // when
+        BatchResult result = repository.saveAll(members, 10);
+
+        // then - 실패한 청크만 롤백되고, 나머지 청크는 커밋
+        Assertions.assertThat(result.getRolledBackCount()).isEqualTo(1);
+        Assertions.assertThat(result.getChunks().get(1).isRolledBack()).isTrue();
+        Assertions.assertThat(result.getFailedMembers()).extracting(Member::getMemberId).containsExactly("bulk12");
+        Assertions.assertThat(result.getSavedCount()).isEqualTo(15);
+        Assertions.assertThat(repository.findById("bulk9").getMoney()).isEqualTo(9);
+        Assertions.assertThat(repository.findById("bulk12").getMoney()).isEqualTo(0);
+        Assertions.assertThatThrownBy(() -> repository.findById("bulk11")).isInstanceOf(NoSuchElementException.class);
+        Assertions.assertThat(repository.findById("bulk20").getMoney()).isEqualTo(20);
+    }
+
+    @Test
+    void saveAllInTransaction() throws SQLException {
+        // given
+        repository.save(new Member("bulk3", 0));
+        List<Member> members = members("bulk", 8);
+
+        // when - 트랜잭션 안에서 실행, 청크 롤백은 Savepoint 로 처리
+        BatchResult result = txTemplate.execute(status -> {
+            try {
+                return repository.saveAll(members, 4);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // then
+        Assertions.assertThat(result.getRolledBackCount()).isEqualTo(1);
+        Assertions.assertThat(result.getSavedCount()).isEqualTo(4);
+        Assertions.assertThatThrownBy(() -> repository.findById("bulk0")).isInstanceOf(NoSuchElementException.class);
+        Assertions.assertThat(repository.findById("bulk7").getMoney()).isEqualTo(7);
+    }
+
+    @Test
+    void transactionBoundConnection() throws SQLException {
+        // given
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+
+        // when - 트랜잭션 안의 Repository 호출은 모두 같은 Connection 을 사용
+        txTemplate.executeWithoutResult(status -> {
+            try {
+                repository.withdraw("memberA", 2000);
+                repository.deposit("memberB", 2000);
+                Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            Assertions.assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+
+        // then - 롤백되어 변경 없음, Connection 은 풀에 반환됨
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(repository.findById("memberB").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(0);
+    }
+
+    @Test
+    void upsert() throws SQLException {
+        // 없으면 insert
+        repository.upsert(new Member("memberA", 10000));
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+
+        // 있으면 update
+        repository.upsert(new Member("memberA", 20000));
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(20000);
+    }
+
+    @Test
+    void upsertAll() throws SQLException {
+        // given - 절반은 이미 존재
+        repository.saveAll(members("sync", 10));
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            members.add(new Member("sync" + i, i * 100));
+        }
+
+        // when
+        int resultCnt = repository.upsertAll(members, 8);
+
+        // then
+        Assertions.assertThat(resultCnt).isEqualTo(20);
+        Assertions.assertThat(repository.findById("sync3").getMoney()).isEqualTo(300);
+        Assertions.assertThat(repository.findById("sync19").getMoney()).isEqualTo(1900);
+    }
+
+    @Test
+    void updateIfVersion() throws SQLException {
+        // given
+        repository.createVersionColumn();
+        repository.setVersioning(true);
+        repository.save(new Member("memberA", 10000));
+        Member read = repository.findByIdVersioned("memberA");
+        Assertions.assertThat(read.getVersion()).isZero();
+
+        // 조회 후 다른 갱신이 먼저 반영됨 - version 증가
+        repository.withdraw("memberA", 1000);
+
+        // when ~ then - 조회한 version 으로는 갱신할 수 없음
+        Assertions.assertThatThrownBy(() -> repository.updateIfVersion("memberA", read.getMoney() + 500, read.getVersion()))
+                .isInstanceOf(MemberVersionConflictException.class);
+
+        // 다시 조회한 version 으로는 갱신됨
+        Member reread = repository.findByIdVersioned("memberA");
+        repository.updateIfVersion("memberA", reread.getMoney() + 500, reread.getVersion());
+        Member updated = repository.findByIdVersioned("memberA");
+        Assertions.assertThat(updated.getMoney()).isEqualTo(9500);
+        Assertions.assertThat(updated.getVersion()).isEqualTo(2);
+
+        // merge 도 version 증가
+        repository.upsert(new Member("memberA", 100));
+        Assertions.assertThat(repository.findByIdVersioned("memberA").getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void findByIds() throws SQLException {
+        // given
+        repository.saveAll(members("multi", 300));
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 299; i >= 0; i--) {
+            memberIds.add("multi" + i);
+        }
+        memberIds.add("multi0");
+        memberIds.add("missingA");
+        memberIds.add("missingB");
+
+        // when - IN 목록 여러 개로 나누어 조회, 없는 회원은 예외 없이 missingIds 로 반환
+        MemberLookup lookup = repository.findByIds(memberIds);
+
+        // then
+        log.info("lookup={}", lookup);
+        Assertions.assertThat(lookup.getMembers()).hasSize(300);
+        Assertions.assertThat(lookup.getMembers().keySet()).first().isEqualTo("multi299");
+        Assertions.assertThat(lookup.get("multi7").getMoney()).isEqualTo(7);
+        Assertions.assertThat(lookup.getMissingIds()).containsExactly("missingA", "missingB");
+        Assertions.assertThat(lookup.isAllFound()).isFalse();
+        Assertions.assertThat(repository.findByIds(List.of()).getMembers()).isEmpty();
+    }
+
+    @Test
+    void forEach() throws SQLException {
+        // given
+        repository.saveAll(members("scan", 250));
+        repository.setFetchSize(50);
+
+        // when
+        AtomicLong total = new AtomicLong();
+        AtomicInteger count = new AtomicInteger();
+        repository.forEach(member -> {
+            count.incrementAndGet();
+            total.addAndGet(member.getMoney());
+        });
+
+        // then
+        Assertions.assertThat(count.get()).isEqualTo(250);
+        Assertions.assertThat(total.get()).isEqualTo(250L * 249 / 2);
+    }
+
+    @Test
+    void forEachRow() throws SQLException {
+        // given
+        repository.saveAll(members("scan", 250));
+        repository.setFetchSize(50);
+
+        // when - Member 를 만들지 않고 컬럼 값만 받음
+        AtomicLong total = new AtomicLong();
+        AtomicInteger count = new AtomicInteger();
+        repository.forEachRow((memberId, money) -> {
+            count.incrementAndGet();
+            total.addAndGet(money);
+        });
+
+        // then
+        Assertions.assertThat(count.get()).isEqualTo(250);
+        Assertions.assertThat(total.get()).isEqualTo(250L * 249 / 2);
+    }
+
+    @Test
+    void streamAll() throws SQLException {
+        // given
+        repository.saveAll(members("scan", 250));
+        repository.setFetchSize(50);
+
+        // when
+        long count;
+        try (Stream<Member> stream = repository.streamAll()) {
+            count = stream.filter(member -> member.getMoney() >= 200).count();
+        }
+
+        // then - Stream 을 닫으면 Connection 이 풀에 반환됨
+        Assertions.assertThat(count).isEqualTo(50);
+        Assertions.assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(0);
+    }
+
+    @Test
+    void findPage() throws SQLException {
+        // given
+        repository.saveAll(members("page", 25));
+
+        // when - nextCursor 를 따라 끝까지 조회
+        List<String> memberIds = new ArrayList<>();
+        int pages = 0;
+        String cursor = null;
+        do {
+            MemberPage page = repository.findPage(cursor, 10);
+            log.info("page={}", page);
+            page.getMembers().forEach(member -> memberIds.add(member.getMemberId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // then
+        Assertions.assertThat(pages).isEqualTo(3);
+        Assertions.assertThat(memberIds).hasSize(25).doesNotHaveDuplicates().isSorted();
+    }
+
+    private List<Member> members(String prefix, int count) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(new Member(prefix + i, i));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,62 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.domain.Member;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+class MemberRowMapperTest {
+
+    MemberRepositoryV0 repository = new MemberRepositoryV0();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        repository.save(new Member("memberA", 10000));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.delete("memberA");
+    }
+
+    @Test
+    void explicitColumns() throws SQLException {
+        try (Connection conn = DBConnectionUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("select " + MemberRowMapper.COLUMNS + " from member where member_id = ?")) {
+            pstmt.setString(1, "memberA");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                Assertions.assertThat(MemberRowMapper.of(rs)).isSameAs(MemberRowMapper.INSTANCE);
+                Assertions.assertThat(MemberRowMapper.INSTANCE.mapRow(rs)).isEqualTo(new Member("memberA", 10000));
+            }
+        }
+    }
+
+    @Test
+    void resolveColumnOrder() throws SQLException {
+        // 컬럼 순서가 COLUMNS 와 다른 경우 - ResultSet 에서 인덱스를 찾아 사용
+        try (Connection conn = DBConnectionUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("select money, member_id from member where member_id = ?")) {
+            pstmt.setString(1, "memberA");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                MemberRowMapper mapper = MemberRowMapper.of(rs);
+                Assertions.assertThat(mapper).isNotSameAs(MemberRowMapper.INSTANCE);
+                Assertions.assertThat(mapper.mapRow(rs)).isEqualTo(new Member("memberA", 10000));
+
+                List<String> values = new ArrayList<>();
+                mapper.processRow(rs, (memberId, money) -> values.add(memberId + "=" + money));
+                Assertions.assertThat(values).containsExactly("memberA=10000");
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.service.MemberServiceV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class TransferLedgerTest {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 repository;
+    MemberServiceV2 memberService;
+    TransferLedger ledger;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new MemberRepositoryV2(dataSource);
+        ledger = new TransferLedger(dataSource);
+        ledger.createTables();
+        memberService = new MemberServiceV2(dataSource, repository);
+        memberService.setLedger(ledger);
+
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        repository.save(new Member("ex", 10000));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        ledger.close();
+        execute("delete from member_ledger");
+        execute("delete from member_ledger_snapshot");
+        repository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void recordInTransaction() throws SQLException {
+        ledger.snapshot();
+
+        memberService.accountTransfer("memberA", "memberB", 2000);
+        // 롤백된 이체는 기록되지 않음
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 1000))
+                .isInstanceOf(IllegalStateException.class);
+
+        Assertions.assertThat(count("select count(*) from member_ledger")).isEqualTo(2);
+        Assertions.assertThat(ledger.balance("memberA")).isEqualTo(8000);
+        Assertions.assertThat(ledger.balance("memberB")).isEqualTo(12000);
+    }
+
+    @Test
+    void recordGroup() throws SQLException {
+        ledger.snapshot();
+
+        // 하나의 트랜잭션 안의 이체 여러 건 - 커밋 직전에 한번에 기록
+        memberService.accountTransferGroup(List.of(
+                new Transfer("memberA", "memberB", 1000),
+                new Transfer("memberB", "memberA", 300),
+                new Transfer("memberA", "missing", 100)));
+
+        Assertions.assertThat(count("select count(*) from member_ledger")).isEqualTo(4);
+        Assertions.assertThat(ledger.balance("memberA")).isEqualTo(9300);
+        Assertions.assertThat(ledger.balance("memberB")).isEqualTo(10700);
+        Assertions.assertThat(repository.findById("memberA").getMoney()).isEqualTo(9300);
+    }
+
+    @Test
+    void balanceAt() throws Exception {
+        Timestamp beforeSnapshot = now();
+        ledger.snapshot();
+        memberService.accountTransfer("memberA", "memberB", 1000);
+
+        Timestamp at = now();
+
+        memberService.accountTransfer("memberA", "memberB", 500);
+        ledger.snapshot();
+        memberService.accountTransfer("memberB", "memberA", 100);
+
+        // 첫 스냅샷 + 이후 journal 1건
+        Assertions.assertThat(ledger.balanceAt("memberA", at)).isEqualTo(9000);
+        // 두번째 스냅샷 + 이후 journal 1건
+        Assertions.assertThat(ledger.balance("memberA")).isEqualTo(8600);
+        Assertions.assertThatThrownBy(() -> ledger.balanceAt("memberA", beforeSnapshot))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void snapshotIncludesPendingCredits() throws SQLException {
+        // given - memberB 로의 입금은 journal 에 모았다가 반영
+        CreditBuffer creditBuffer = new CreditBuffer(dataSource, repository, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                Set.of("memberB"), 1, TimeUnit.HOURS);
+        creditBuffer.createJournalTable();
+        memberService.setCreditBuffer(creditBuffer);
+        try {
+            ledger.snapshot();
+            memberService.accountTransfer("memberA", "memberB", 1000);
+
+            // when - 반영 전 스냅샷, 이후 반영
+            ledger.snapshot();
+            creditBuffer.flush();
+
+            // then - 스냅샷 잔액에 반영 대기 입금이 포함되어 있으므로 입금이 빠지지 않음
+            Assertions.assertThat(ledger.balance("memberB")).isEqualTo(11000);
+            Assertions.assertThat(repository.findById("memberB").getMoney()).isEqualTo(11000);
+        } finally {
+            creditBuffer.close();
+        }
+    }
+
+    // 전후 기록과 시각이 겹치지 않도록 잠시 대기
+    private Timestamp now() throws InterruptedException {
+        Thread.sleep(20);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Thread.sleep(20);
+        return now;
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ReadWriteRoutingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class AsyncMemberServiceTest {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 memberRepository;
+    MemberServiceV2 memberService;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(4);
+        memberRepository = new MemberRepositoryV2(dataSource);
+        memberService = new MemberServiceV2(dataSource, memberRepository);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        memberRepository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void transferAll() throws Exception {
+        // given
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            transfers.add(i % 2 == 0 ? new Transfer("memberA", "memberB", 100) : new Transfer("memberB", "memberA", 100));
+        }
+        transfers.add(new Transfer("memberA", "nobody", 100));
+
+        // when
+        Map<Integer, RuntimeException> failures;
+        try (AsyncMemberService asyncService = AsyncMemberService.forPool(memberService, dataSource, true)) {
+            // 동시 실행 수는 커넥션 풀 크기로 제한
+            Assertions.assertThat(asyncService.getMaxConcurrency()).isEqualTo(4);
+            log.info("virtualThreads={}", asyncService.isVirtualThreads());
+            failures = asyncService.transferAll(transfers).get(30, TimeUnit.SECONDS);
+        }
+
+        // then - 받는 회원이 없는 이체만 실패하고 롤백
+        Assertions.assertThat(failures).containsOnlyKeys(50);
+        Assertions.assertThat(failures.get(50)).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void accountTransferFuture() throws Exception {
+        memberRepository.save(new Member("memberA", 1000));
+        memberRepository.save(new Member("memberB", 0));
+
+        try (AsyncMemberService asyncService = new AsyncMemberService(memberService, 2, false)) {
+            Assertions.assertThat(asyncService.isVirtualThreads()).isFalse();
+            CompletableFuture<Void> ok = asyncService.accountTransfer("memberA", "memberB", 1000);
+            ok.get(10, TimeUnit.SECONDS);
+            CompletableFuture<Void> insufficient = asyncService.accountTransfer("memberA", "memberB", 1000);
+            Assertions.assertThatThrownBy(() -> insufficient.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        Assertions.assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(1000);
+    }
+
+    // 라우팅 / 위임 DataSource 로 감싸도 HikariCP 최대 풀 크기를 찾음
+    @Test
+    void poolSizeOfWrappedDataSource() throws SQLException {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(dataSource, List.of(), ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN);
+
+        Assertions.assertThat(AsyncMemberService.poolSize(dataSource)).isEqualTo(4);
+        Assertions.assertThat(AsyncMemberService.poolSize(routing)).isEqualTo(4);
+        Assertions.assertThat(AsyncMemberService.poolSize(new DelegatingDataSource(routing))).isEqualTo(4);
+    }
+}
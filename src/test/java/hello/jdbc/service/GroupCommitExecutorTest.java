@@ -0,0 +1,151 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class GroupCommitExecutorTest {
+
+    HikariDataSource dataSource;
+    MemberRepositoryV2 memberRepository;
+    MemberServiceV2 memberService;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV2(dataSource);
+        memberService = new MemberServiceV2(dataSource, memberRepository);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        memberRepository.deleteAll();
+        dataSource.close();
+    }
+
+    @Test
+    void groupCommit() throws Exception {
+        // given
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+
+        // when - 여러 스레드에서 동시에 이체 요청
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (GroupCommitExecutor executor = new GroupCommitExecutor(memberService, 50, 5, TimeUnit.MILLISECONDS)) {
+            List<CompletableFuture<Void>> submits = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                boolean forward = t % 2 == 0;
+                submits.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        Transfer transfer = forward ? new Transfer("memberA", "memberB", 10) : new Transfer("memberB", "memberA", 10);
+                        synchronized (futures) {
+                            futures.add(executor.submit(transfer));
+                        }
+                    }
+                }));
+            }
+            CompletableFuture.allOf(submits.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            // then - 200 건의 이체가 그보다 훨씬 적은 트랜잭션으로 처리됨
+            log.info("groups={}, averageGroupSize={}", executor.getGroupCount(), executor.getAverageGroupSize());
+            Assertions.assertThat(executor.getTransferCount()).isEqualTo(200);
+            Assertions.assertThat(executor.getGroupCount()).isLessThan(200);
+        }
+        Assertions.assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void failureIsolation() throws SQLException {
+        // given
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 0));
+        memberRepository.save(new Member("memberC", 0));
+        memberRepository.save(new Member("ex", 0));
+
+        // when
+        List<Transfer> transfers = List.of(
+                new Transfer("memberB", "memberC", 3000),   // 0: B 잔액은 1번 이체 입금 후에야 충분 -> 개별 재시도로 성공
+                new Transfer("memberA", "memberB", 5000),   // 1: 성공
+                new Transfer("memberA", "nobody", 1000),    // 2: 받는 회원 없음 -> 차감 되돌림
+                new Transfer("memberA", "ex", 1000),        // 3: 검증 실패
+                new Transfer("memberC", "memberA", 99999)); // 4: 잔액 부족
+        Map<Integer, RuntimeException> failures = memberService.accountTransferGroup(transfers);
+
+        // then
+        log.info("failures={}", failures);
+        Assertions.assertThat(failures).containsOnlyKeys(2, 3, 4);
+        Assertions.assertThat(failures.get(2)).isInstanceOf(IllegalStateException.class).hasCauseInstanceOf(NoSuchElementException.class);
+        Assertions.assertThat(failures.get(3)).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(5000);
+        Assertions.assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(2000);
+        Assertions.assertThat(memberRepository.findById("memberC").getMoney()).isEqualTo(3000);
+        Assertions.assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(0);
+    }
+
+    @Test
+    void futureCompletesExceptionally() throws SQLException {
+        memberRepository.save(new Member("memberA", 100));
+        memberRepository.save(new Member("memberB", 0));
+
+        try (GroupCommitExecutor executor = new GroupCommitExecutor(memberService)) {
+            CompletableFuture<Void> ok = executor.submit(new Transfer("memberA", "memberB", 100));
+            CompletableFuture<Void> insufficient = executor.submit(new Transfer("memberA", "memberB", 100));
+
+            Assertions.assertThat(ok).succeedsWithin(10, TimeUnit.SECONDS);
+            Assertions.assertThatThrownBy(() -> insufficient.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        Assertions.assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(100);
+    }
+
+    // close() 와 동시에 접수된 이체도 결과(성공 또는 종료 예외)를 받음 - join() 이 멈추지 않음
+    @Test
+    void submitRacingClose() throws Exception {
+        memberRepository.save(new Member("memberA", 100000));
+        memberRepository.save(new Member("memberB", 0));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        GroupCommitExecutor executor = new GroupCommitExecutor(memberService, 10, 1, TimeUnit.MILLISECONDS);
+        CompletableFuture<Void> submitter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 2000; i++) {
+                CompletableFuture<Void> future = executor.submit(new Transfer("memberA", "memberB", 10));
+                synchronized (futures) {
+                    futures.add(future);
+                }
+            }
+        });
+        Thread.sleep(5);
+        executor.close();
+        submitter.get(10, TimeUnit.SECONDS);
+
+        synchronized (futures) {
+            Assertions.assertThat(futures).hasSize(2000);
+            Assertions.assertThat(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((result, e) -> true))
+                    .succeedsWithin(10, TimeUnit.SECONDS);
+        }
+    }
+}
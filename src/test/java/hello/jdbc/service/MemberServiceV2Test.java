@@ -2,6 +2,7 @@ package hello.jdbc.service;
 
 import com.zaxxer.hikari.HikariDataSource;
 import hello.jdbc.domain.Member;
+import hello.jdbc.lock.StripedLockManager;
 import hello.jdbc.repository.MemberRepositoryV2;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.Assertions;
@@ -9,8 +10,16 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.PessimisticLockingFailureException;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 // 하나의 Connection 을 하나의 트랜잭션이 공유하도록 하는 예제
 @Slf4j
@@ -36,6 +45,8 @@ class MemberServiceV2Test {
     @AfterEach()
     void afterEach() throws SQLException {
         this.memberRepository.deleteAll();
+        // createVersionColumn 으로 추가한 컬럼 제거 - 공용 member 테이블을 원래대로
+        this.memberRepository.dropVersionColumn();
     }
 
     @Test
@@ -70,4 +81,203 @@ class MemberServiceV2Test {
         Assertions.assertThat(findMemberA.getMoney()).isEqualTo(8000);
         Assertions.assertThat(findMemberEX.getMoney()).isEqualTo(10000);
     }
+
+    @Test
+    @DisplayName("잔액 부족")
+    void accountTransferInsufficient() throws SQLException {
+        // given
+        Member memberA = new Member(MEMBER_A, 1000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+        // when ~ then - 차감 조건(money >= ?)에 걸려 갱신되지 않고 롤백
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000)).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(1000);
+        Assertions.assertThat(memberRepository.findById(memberB.getMemberId()).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("동시 이체 - 갱신 유실 없음")
+    void accountTransferConcurrent() throws Exception {
+        // given
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+        // when - 같은 계좌로의 이체를 동시에 실행
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(() -> {
+                memberService.accountTransfer(MEMBER_A, MEMBER_B, 100);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        // then - 모든 이체가 반영됨
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("낙관적 락 동시 이체 - 충돌은 재시도, 갱신 유실 없음")
+    void accountTransferOptimistic() throws Exception {
+        // given
+        memberRepository.createVersionColumn();
+        memberRepository.setVersioning(true);
+        memberService.setOptimisticLocking(true);
+        memberService.setRetryPolicy(new RetryPolicy(100, 1, 20, 10000));
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        // when - 같은 계좌로의 이체를 동시에 실행
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(() -> {
+                memberService.accountTransfer(MEMBER_A, MEMBER_B, 100);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        // then - 모든 이체가 반영되고, 이체마다 version 이 1 씩 증가
+        log.info("retryCount={}", memberService.getRetryCount());
+        Member findMemberA = memberRepository.findByIdVersioned(MEMBER_A);
+        Assertions.assertThat(findMemberA.getMoney()).isEqualTo(8000);
+        Assertions.assertThat(findMemberA.getVersion()).isEqualTo(20);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("반대 방향 동시 이체 - 교착 상태 없음")
+    void accountTransferOpposite() throws Exception {
+        // given
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+        // when - A->B, B->A 이체를 동시에 실행 (memberId 순서로 락을 획득하므로 교착 상태가 생기지 않음)
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                memberService.accountTransfer(forward ? MEMBER_A : MEMBER_B, forward ? MEMBER_B : MEMBER_A, 100);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        // then - 모든 이체가 반영되어 잔액이 그대로
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("JVM 락 - 같은 계좌로 몰리는 동시 이체")
+    void accountTransferWithLockManager() throws Exception {
+        // given
+        StripedLockManager lockManager = new StripedLockManager(8);
+        memberService.setLockManager(lockManager);
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                memberService.accountTransfer(forward ? MEMBER_A : MEMBER_B, forward ? MEMBER_B : MEMBER_A, 100);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        // then - JVM 락에서 줄을 서므로 DB 락 충돌로 인한 재시도 없음
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberService.getRetryCount()).isZero();
+        Assertions.assertThat(lockManager.stats(lockManager.stripe(MEMBER_A)).getAcquireCount()).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("락 대기 시간 초과 - 재시도 후 성공")
+    void accountTransferRetryOnLockTimeout() throws Exception {
+        // given - 락 대기 시간을 100ms 로 줄인 DataSource
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:tcp://localhost/~/test");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setConnectionInitSql("SET LOCK_TIMEOUT 100");
+        MemberServiceV2 service = new MemberServiceV2(dataSource, new MemberRepositoryV2(dataSource));
+        service.setRetryPolicy(new RetryPolicy(20, 50, 100, 5000));
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when - 다른 트랜잭션이 memberA 의 락을 잡고 있는 중에 이체, 재시도가 일어난 뒤 락 해제
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement("select * from member where member_id = ? for update")) {
+                pstmt.setString(1, MEMBER_A);
+                pstmt.executeQuery().close();
+            }
+            Future<?> transfer = Executors.newSingleThreadExecutor().submit(() -> service.accountTransfer(MEMBER_A, MEMBER_B, 2000));
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (service.getRetryCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            conn.rollback();
+            conn.setAutoCommit(true);
+            transfer.get();
+        } finally {
+            dataSource.close();
+        }
+
+        // then
+        Assertions.assertThat(service.getRetryCount()).isPositive();
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("락 대기 시간 초과 - 재시도 하지 않으면 실패")
+    void accountTransferNoRetry() throws Exception {
+        // given
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:tcp://localhost/~/test");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setConnectionInitSql("SET LOCK_TIMEOUT 100");
+        MemberServiceV2 service = new MemberServiceV2(dataSource, new MemberRepositoryV2(dataSource));
+        service.setRetryPolicy(RetryPolicy.NONE);
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when ~ then - 락 대기 시간 초과는 PessimisticLockingFailureException 으로 분류됨
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement("select * from member where member_id = ? for update")) {
+                pstmt.setString(1, MEMBER_B);
+                pstmt.executeQuery().close();
+            }
+            Assertions.assertThatThrownBy(() -> service.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasCauseInstanceOf(PessimisticLockingFailureException.class);
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } finally {
+            dataSource.close();
+        }
+        Assertions.assertThat(service.getRetryCount()).isZero();
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
 }
@@ -0,0 +1,28 @@
+package hello.jdbc.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTest {
+
+    @Test
+    void backoffIsBoundedByExponentialCeiling() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 200, 1000);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertThat(policy.backoffMillis(1)).isBetween(0L, 10L);
+            Assertions.assertThat(policy.backoffMillis(3)).isBetween(0L, 40L);
+            Assertions.assertThat(policy.backoffMillis(10)).isBetween(0L, 200L);
+        }
+    }
+
+    @Test
+    void attemptsAndBudget() {
+        RetryPolicy policy = new RetryPolicy(3, 10, 200, 1000);
+        long now = System.nanoTime();
+        Assertions.assertThat(policy.canRetry(2, now)).isTrue();
+        Assertions.assertThat(policy.canRetry(3, now)).isFalse();
+        // 예산(1초)을 넘은 경우
+        Assertions.assertThat(policy.canRetry(1, now - 2_000_000_000L)).isFalse();
+        Assertions.assertThat(RetryPolicy.NONE.canRetry(1, now)).isFalse();
+    }
+}
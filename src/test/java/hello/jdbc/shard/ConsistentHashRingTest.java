@@ -0,0 +1,41 @@
+package hello.jdbc.shard;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTest {
+
+    @Test
+    void distribution() {
+        ConsistentHashRing ring = new ConsistentHashRing(4);
+
+        int[] counts = new int[4];
+        for (int i = 0; i < 10000; i++) {
+            counts[ring.shardOf("member" + i)]++;
+        }
+
+        // 샤드별로 대략 1/4 씩
+        for (int count : counts) {
+            Assertions.assertThat(count).isBetween(1500, 3500);
+        }
+    }
+
+    @Test
+    void addShardMovesOnlyPart() {
+        ConsistentHashRing before = new ConsistentHashRing(4);
+        ConsistentHashRing after = new ConsistentHashRing(5);
+
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            String key = "member" + i;
+            if (before.shardOf(key) != after.shardOf(key)) {
+                moved++;
+                // 이동하는 키는 새 샤드로만 이동
+                Assertions.assertThat(after.shardOf(key)).isEqualTo(4);
+            }
+        }
+
+        // 약 1/5 만 이동 (모듈러 해싱이면 약 4/5 가 이동)
+        Assertions.assertThat(moved).isBetween(1000, 3000);
+    }
+}
@@ -0,0 +1,25 @@
+package hello.jdbc.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+// 샤드 테스트용 메모리 DB
+abstract class ShardTestSupport {
+
+    static HikariDataSource shard(String url) throws SQLException {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("create table if not exists member (member_id varchar(10) primary key, money integer not null default 0)");
+            stmt.execute("delete from member");
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,139 @@
+package hello.jdbc.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.service.MemberServiceV2;
+import hello.jdbc.service.RetryPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// 샤드 2개(메모리 DB) 사이의 이체 - 코디네이터 로그는 0번 샤드에 저장
+@Slf4j
+class ShardTransactionCoordinatorTest {
+
+    List<HikariDataSource> shards = new ArrayList<>();
+    ShardedMemberRepository repository;
+    ShardTransactionCoordinator coordinator;
+    MemberServiceV2 memberService;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        shards.add(ShardTestSupport.shard("jdbc:h2:mem:txshard0;DB_CLOSE_DELAY=-1"));
+        shards.add(ShardTestSupport.shard("jdbc:h2:mem:txshard1;DB_CLOSE_DELAY=-1"));
+        repository = new ShardedMemberRepository(new ArrayList<>(shards));
+        coordinator = new ShardTransactionCoordinator(repository, shards.get(0));
+        coordinator.createLogTable();
+        memberService = new MemberServiceV2(shards.get(0), repository.getRepository(0));
+        memberService.setShardCoordinator(coordinator);
+        memberService.setRetryPolicy(RetryPolicy.NONE);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.deleteAll();
+        repository.close();
+        shards.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void sameShard() throws SQLException {
+        String memberA = memberOn(0, 0);
+        String memberB = memberOn(0, 1);
+        repository.save(new Member(memberA, 10000));
+        repository.save(new Member(memberB, 10000));
+
+        memberService.accountTransfer(memberA, memberB, 2000);
+
+        // 2단계 커밋 없이 처리
+        Assertions.assertThat(repository.findById(memberA).getMoney()).isEqualTo(8000);
+        Assertions.assertThat(repository.findById(memberB).getMoney()).isEqualTo(12000);
+        Assertions.assertThat(coordinator.getCommitCount()).isZero();
+    }
+
+    @Test
+    void crossShard() throws SQLException {
+        String memberA = memberOn(0, 0);
+        String memberB = memberOn(1, 0);
+        repository.save(new Member(memberA, 10000));
+        repository.save(new Member(memberB, 10000));
+
+        memberService.accountTransfer(memberA, memberB, 2000);
+        memberService.accountTransfer(memberB, memberA, 500);
+
+        Assertions.assertThat(repository.findById(memberA).getMoney()).isEqualTo(8500);
+        Assertions.assertThat(repository.findById(memberB).getMoney()).isEqualTo(11500);
+        Assertions.assertThat(coordinator.getCommitCount()).isEqualTo(2);
+        Assertions.assertThat(logCount()).isZero();
+    }
+
+    @Test
+    void crossShardRollback() throws SQLException {
+        String memberA = memberOn(0, 0);
+        String missing = memberOn(1, 0);
+        repository.save(new Member(memberA, 10000));
+
+        // 받는 회원이 없으면 두 샤드 모두 롤백
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer(memberA, missing, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        Assertions.assertThat(repository.findById(memberA).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(coordinator.getRollbackCount()).isEqualTo(1);
+        Assertions.assertThat(logCount()).isZero();
+    }
+
+    @Test
+    void recover() throws SQLException {
+        // given - PREPARE 까지 마친 뒤 중단된 트랜잭션 2개, 그 중 하나만 커밋 결정이 로그에 기록됨
+        try (Connection committed = shards.get(1).getConnection();
+             Connection aborted = shards.get(1).getConnection();
+             Connection logConn = shards.get(0).getConnection()) {
+            prepare(committed, "insert into member values ('recoverA', 100)", "SHARD_TX_A");
+            prepare(aborted, "insert into member values ('recoverB', 100)", "SHARD_TX_B");
+            logConn.createStatement().execute("insert into shard_tx_log (tx_id, participants) values ('SHARD_TX_A', '[1]')");
+
+            // when
+            int resolved = coordinator.recover();
+
+            // then - 로그에 있는 트랜잭션은 커밋, 없는 트랜잭션은 롤백
+            Assertions.assertThat(resolved).isEqualTo(2);
+            Assertions.assertThat(repository.getRepository(1).findByIds(List.of("recoverA", "recoverB")).getMissingIds()).containsExactly("recoverB");
+            Assertions.assertThat(logCount()).isZero();
+        }
+    }
+
+    // shard 에 배정되는 n 번째 memberId
+    private String memberOn(int shard, int n) {
+        for (int i = 0; ; i++) {
+            String memberId = "member" + i;
+            if (repository.shardOf(memberId) == shard && n-- == 0) {
+                return memberId;
+            }
+        }
+    }
+
+    private void prepare(Connection conn, String sql, String txId) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+            stmt.execute("prepare commit " + txId);
+        }
+    }
+
+    private int logCount() throws SQLException {
+        try (Connection conn = shards.get(0).getConnection(); Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery("select count(*) from shard_tx_log");
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package hello.jdbc.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberLookup;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 샤드는 메모리 DB 3개를 사용
+@Slf4j
+class ShardedMemberRepositoryTest {
+
+    List<HikariDataSource> shards = new ArrayList<>();
+    ShardedMemberRepository repository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            shards.add(ShardTestSupport.shard("jdbc:h2:mem:shard" + i + ";DB_CLOSE_DELAY=-1"));
+        }
+        repository = new ShardedMemberRepository(new ArrayList<>(shards));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repository.deleteAll();
+        repository.close();
+        shards.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void routing() throws SQLException {
+        // given
+        for (int i = 0; i < 30; i++) {
+            repository.save(new Member("member" + i, i));
+        }
+
+        // then - 각 회원은 자신의 샤드에만 저장됨
+        for (int i = 0; i < 30; i++) {
+            String memberId = "member" + i;
+            int shard = repository.shardOf(memberId);
+            Assertions.assertThat(repository.getRepository(shard).findByIds(List.of(memberId)).isAllFound()).isTrue();
+            Assertions.assertThat(repository.getRepository((shard + 1) % 3).findByIds(List.of(memberId)).isAllFound()).isFalse();
+        }
+        repository.update("member7", 700);
+        Assertions.assertThat(repository.findById("member7").getMoney()).isEqualTo(700);
+    }
+
+    @Test
+    void findByIds() throws SQLException {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            members.add(new Member("member" + i, i));
+        }
+        Assertions.assertThat(repository.upsertAll(members)).isEqualTo(100);
+
+        // when - 샤드별로 나누어 병렬 조회
+        List<String> memberIds = new ArrayList<>(List.of("missingA"));
+        for (int i = 99; i >= 0; i--) {
+            memberIds.add("member" + i);
+        }
+        MemberLookup lookup = repository.findByIds(memberIds);
+
+        // then - 요청한 순서로 합쳐짐
+        Assertions.assertThat(lookup.getMembers()).hasSize(100);
+        Assertions.assertThat(lookup.getMembers().keySet()).first().isEqualTo("member99");
+        Assertions.assertThat(lookup.getMissingIds()).containsExactly("missingA");
+    }
+
+    @Test
+    void forEachRow() throws SQLException {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            members.add(new Member("member" + i, i));
+        }
+        repository.upsertAll(members);
+
+        // when - 샤드별 전체 조회를 병렬로 실행
+        AtomicLong total = new AtomicLong();
+        AtomicInteger count = new AtomicInteger();
+        repository.forEachRow((memberId, money) -> {
+            count.incrementAndGet();
+            total.addAndGet(money);
+        });
+
+        // then
+        Assertions.assertThat(count.get()).isEqualTo(300);
+        Assertions.assertThat(total.get()).isEqualTo(300L * 299 / 2);
+    }
+
+    // 병렬 조회는 샤드가 하나뿐이어도 트랜잭션 밖에서 실행 - 커밋 전 행은 보이지 않음
+    @Test
+    void fanOutIsNeverTransactional() {
+        int shard = repository.shardOf("member1");
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(shards.get(shard)));
+
+        txTemplate.executeWithoutResult(status -> {
+            try {
+                repository.save(new Member("member1", 100));
+                Assertions.assertThat(repository.findById("member1").getMoney()).isEqualTo(100);
+                Assertions.assertThat(repository.findByIds(List.of("member1")).getMissingIds()).containsExactly("member1");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.connection.StatementCache;
+import hello.jdbc.repository.MemberRepositoryV2;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+// member 테이블이 있는 test DB 로 애플리케이션을 시작 - 워밍업이 요청을 처리하는 Repository 의 StatementCache 를 채움
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + URL,
+        "spring.datasource.username=" + USERNAME,
+        "spring.datasource.password=" + PASSWORD,
+        "warmup.read-iterations=20"})
+class StartupWarmupApplicationTest {
+
+    @Autowired
+    StatementCache statementCache;
+
+    @Autowired
+    MemberRepositoryV2 memberRepository;
+
+    @Autowired
+    StartupWarmup startupWarmup;
+
+    @Autowired
+    ApplicationAvailability availability;
+
+    @Test
+    void warmupFillsServingStatementCache() {
+        Assertions.assertThat(startupWarmup.getStageMillis()).containsKeys(
+                StartupWarmup.STAGE_POOL, StartupWarmup.STAGE_STATEMENTS, StartupWarmup.STAGE_READS);
+        Assertions.assertThat(statementCache.size()).isGreaterThanOrEqualTo(memberRepository.statementSql().size());
+        Assertions.assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+}
@@ -0,0 +1,64 @@
+package hello.jdbc.warmup;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.StatementCache;
+import hello.jdbc.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+@Slf4j
+class StartupWarmupTest {
+
+    HikariDataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void warmup() {
+        dataSource = dataSource(URL, 3);
+        StatementCache statementCache = new StatementCache();
+        MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+        repository.setStatementCache(statementCache);
+
+        StartupWarmup warmup = new StartupWarmup(dataSource, repository, 20);
+        warmup.warmup();
+
+        log.info("stageMillis={}, statementCache={}", warmup.getStageMillis(), statementCache);
+        // 풀이 minimumIdle 까지 채워짐
+        Assertions.assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isGreaterThanOrEqualTo(3);
+        // Connection 마다 Repository SQL 이 모두 캐시됨
+        Assertions.assertThat(statementCache.size()).isEqualTo(3 * repository.statementSql().size());
+        Assertions.assertThat(warmup.getStageMillis()).containsOnlyKeys(
+                StartupWarmup.STAGE_POOL, StartupWarmup.STAGE_STATEMENTS, StartupWarmup.STAGE_READS);
+    }
+
+    // member 테이블이 없는 DB - 실패한 단계는 경고만 남기고 워밍업은 끝까지 진행
+    @Test
+    void warmupWithoutMemberTable() {
+        dataSource = dataSource("jdbc:h2:mem:warmup", 2);
+        StartupWarmup warmup = new StartupWarmup(dataSource, new MemberRepositoryV2(dataSource), 20);
+
+        warmup.warmup();
+
+        Assertions.assertThat(warmup.getStageMillis()).containsKeys(StartupWarmup.STAGE_POOL, StartupWarmup.STAGE_READS);
+    }
+
+    private HikariDataSource dataSource(String url, int minimumIdle) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMinimumIdle(minimumIdle);
+        dataSource.setMaximumPoolSize(5);
+        return dataSource;
+    }
+}